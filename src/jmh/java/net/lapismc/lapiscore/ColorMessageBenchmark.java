@@ -0,0 +1,68 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore;
+
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the single pass colorMessage with the regex and replace implementation it replaced
+ * Run with ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorMessageBenchmark {
+
+    private static final String PRIMARY = ChatColor.GOLD.toString();
+    private static final String SECONDARY = ChatColor.RED.toString();
+
+    @Param({
+            "Plain text with no colors at all",
+            "&sYou must wait &p5 &sseconds before using this command again",
+            "#FF8800Hex &lbold &r#00AAFFand more hex"
+    })
+    public String message;
+
+    @Benchmark
+    public String singlePass() {
+        return LapisCoreConfiguration.colorMessage(message, PRIMARY, SECONDARY);
+    }
+
+    @Benchmark
+    public String original() {
+        Matcher matcher = Pattern.compile("#([A-Fa-f0-9]{6})").matcher(message);
+        StringBuilder builder = new StringBuilder(message.length() + 4 * 8);
+        while (matcher.find()) {
+            String group = matcher.group(1);
+            matcher.appendReplacement(builder, ChatColor.COLOR_CHAR + "x"
+                    + ChatColor.COLOR_CHAR + group.charAt(0) + ChatColor.COLOR_CHAR + group.charAt(1)
+                    + ChatColor.COLOR_CHAR + group.charAt(2) + ChatColor.COLOR_CHAR + group.charAt(3)
+                    + ChatColor.COLOR_CHAR + group.charAt(4) + ChatColor.COLOR_CHAR + group.charAt(5));
+        }
+        String msg = matcher.appendTail(builder).toString();
+        return ChatColor.translateAlternateColorCodes('&', msg.replace("&p", PRIMARY).replace("&s", SECONDARY));
+    }
+
+}
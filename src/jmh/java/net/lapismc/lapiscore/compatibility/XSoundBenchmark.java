@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.compatibility;
+
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cached XSound name matching and sound string parsing with the work they skip
+ * XSound reads the sound registry when it loads, so MockBukkit is used to provide one
+ * The uncached parse still matches the name through the cache, so it understates the old cost slightly
+ * Run with ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XSoundBenchmark {
+
+    //Config values are often written in lower case with spaces, which is the slowest case for format
+    @Param({"ENTITY_EXPERIENCE_ORB_PICKUP", "entity experience orb pickup"})
+    public String name;
+    private String sound;
+
+    @Setup
+    public void setup() {
+        MockBukkit.mock();
+        XSound.clearCache();
+        sound = "~" + name + ", 0.5, 1.2";
+    }
+
+    @TearDown
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public Optional<XSound> matchCached() {
+        return XSound.matchXSound(name);
+    }
+
+    @Benchmark
+    public Optional<XSound> matchUncached() {
+        return XSound.matchUncached(name);
+    }
+
+    @Benchmark
+    public XSound.Record parseCached() {
+        return XSound.parse(sound);
+    }
+
+    @Benchmark
+    public XSound.Record parseUncached() {
+        return XSound.parseUncached(sound);
+    }
+
+}
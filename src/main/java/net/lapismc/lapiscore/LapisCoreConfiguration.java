@@ -16,31 +16,74 @@
 
 package net.lapismc.lapiscore;
 
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.lapismc.lapiscore.compatibility.ServerImplementations;
+import net.lapismc.lapiscore.compatibility.XSound;
 import net.lapismc.lapiscore.placeholder.PlaceholderAPIHook;
 import net.lapismc.lapiscore.utils.LapisCoreConfigUpdater;
+import net.lapismc.lapiscore.utils.LapisCoreFileWatcher;
+import net.lapismc.lapiscore.utils.LapisSoundPlayer;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
  * An utility class for dealing with config.yml and messages.yml files
+ * <p>
+ * Messages can be translated by adding files such as messages_de.yml or messages_de_de.yml,
+ * players are sent messages from the file that matches their client locale, and any message missing
+ * from the translation falls back to messages.yml
+ * <p>
+ * Sounds can be configured in the Sounds section of the config.yml in the {@link XSound#parse(String)} format,
+ * they are parsed when the config is loaded and played by name with {@link #playSound(String, Player)}
  */
 @SuppressWarnings("FieldCanBeLocal")
 public class LapisCoreConfiguration {
 
+    //Messages starting with this are parsed with MiniMessage, see getComponent
+    private static final String MINI_MESSAGE_PREFIX = "<mm>";
     private final int configVersion;
     private final int messagesVersion;
     private final LapisCorePlugin core;
     private final File messagesFile;
+    //Parsed messages, cleared when the messages are reloaded
+    private final Map<String, Component> components = new ConcurrentHashMap<>();
+    private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+    //Translations by lower case locale e.g. de_de, loaded the first time a player with that locale needs one
+    private final Map<String, LocaleBundle> locales = new ConcurrentHashMap<>();
+    //Stored for locales that have no translation so that we don't look for the file again
+    private final LocaleBundle noBundle = new LocaleBundle(null);
+    private final LapisSoundPlayer soundPlayer;
+    //Replaced as a whole when the config is reloaded so that it can be read from any thread
+    private volatile Map<String, XSound.Record> sounds = Collections.emptyMap();
+    //Adventure is only available on Paper, so components are only used when this is true
+    private final boolean paper = new ServerImplementations().getImplementations().contains(ServerImplementations.imp.Paper);
+    //Created the first time a component is needed, see getLegacySerializer
+    private volatile LegacyComponentSerializer legacySerializer;
     private YamlConfiguration messages;
 
     /**
@@ -56,8 +99,10 @@ public class LapisCoreConfiguration {
         this.configVersion = configVersion;
         this.messagesVersion = messagesVersion;
         messagesFile = new File(core.getDataFolder() + File.separator + "messages.yml");
+        soundPlayer = new LapisSoundPlayer(core.tasks);
         generateConfigs();
         checkConfigVersions(ignoredSections);
+        reloadSounds();
     }
 
     /**
@@ -107,6 +152,73 @@ public class LapisCoreConfiguration {
         }
         core.primaryColor = colorMessage(messages.getString("PrimaryColor", ChatColor.GOLD.toString()));
         core.secondaryColor = colorMessage(messages.getString("SecondaryColor", ChatColor.RED.toString()));
+        components.clear();
+        templates.clear();
+        locales.clear();
+    }
+
+    /**
+     * Forget all loaded translations, they will be loaded again from their files when they are next needed
+     * This is called by {@link LapisCoreFileWatcher} when a messages_ file is edited
+     */
+    public void reloadLocales() {
+        locales.clear();
+    }
+
+    /**
+     * Parse every sound in the Sounds section of the config.yml, this is called by {@link LapisCorePlugin#reloadConfig()}
+     * Sections can be nested, e.g. Sounds.Teleport.Success is played with the name "Teleport.Success"
+     * An error is logged for each sound that can't be parsed, the rest are still loaded
+     * The {@link XSound} parse cache is cleared first so that every reload parses the sounds again
+     */
+    public void reloadSounds() {
+        ConfigurationSection section = core.getConfig().getConfigurationSection("Sounds");
+        //Plugins that don't use sounds shouldn't pay for loading XSound
+        if (section == null) {
+            sounds = Collections.emptyMap();
+            return;
+        }
+        XSound.clearCache();
+        Map<String, XSound.Record> loaded = new HashMap<>();
+        for (String key : section.getKeys(true)) {
+            if (!section.isString(key))
+                continue;
+            String value = section.getString(key);
+            try {
+                XSound.Record record = XSound.parse(value);
+                //Sounds set to none are left out so that they aren't played
+                if (record != null)
+                    loaded.put(key, record);
+            } catch (IllegalArgumentException e) {
+                core.getLogger().warning("The sound \"" + value + "\" at Sounds." + key + " is invalid and won't be played: "
+                        + e.getMessage());
+            }
+        }
+        sounds = loaded;
+    }
+
+    /**
+     * Get a sound from the Sounds section of the config.yml
+     *
+     * @param name The path of the sound within the Sounds section
+     * @return A copy of the sound that can be changed freely, or null if it isn't configured, is invalid or is none
+     */
+    public XSound.Record getSound(String name) {
+        XSound.Record record = sounds.get(name);
+        return record == null ? null : record.clone();
+    }
+
+    /**
+     * Play a sound from the Sounds section of the config.yml to a player, this is safe to call from any thread
+     * Nothing is played if the sound isn't configured, is invalid or is none
+     *
+     * @param name   The path of the sound within the Sounds section
+     * @param player The player to play the sound to
+     */
+    public void playSound(String name, Player player) {
+        XSound.Record record = sounds.get(name);
+        if (record != null)
+            soundPlayer.play(player, record);
     }
 
     private void checkConfigVersions(List<String> ignoredSections) {
@@ -133,6 +245,15 @@ public class LapisCoreConfiguration {
         return messages;
     }
 
+    /**
+     * Check if messages can be sent as Adventure components, this is only possible on Paper and its forks
+     *
+     * @return true if {@link #getComponent(String)} and {@link #getComponent(String, Player)} can be used
+     */
+    public boolean isPaper() {
+        return paper;
+    }
+
     /**
      * Gets the raw String from the messages.yml file
      * Also has a failsafe for if something has happened to the messages YML in memory
@@ -160,49 +281,302 @@ public class LapisCoreConfiguration {
 
     /**
      * Overloaded {@link #getMessage(String)} for dealing with placeholder API
+     * If the player is online the message is translated to their locale when a translation exists
      *
      * @param key The key in the messages.yml
      * @param op  The player that this message will be sent too
      * @return Returns a colorized string with placeholders replaced from the given key in the messages.yml
      */
     public String getMessage(String key, OfflinePlayer op) {
-        return colorMessage(replacePlaceholders(getRawMessage(key), op));
+        LocaleBundle bundle = op instanceof Player ? getBundle(getLocale((Player) op)) : null;
+        String raw = bundle == null ? null : bundle.getChangedMessage(key);
+        return colorMessage(replacePlaceholders(raw == null ? getRawMessage(key) : raw, op));
+    }
+
+    /**
+     * Get a message from the messages.yml as an Adventure {@link Component}
+     * Each message is parsed once and then cached until {@link #reloadMessages()}, so this is cheap to send to many players
+     * <p>
+     * Messages can use legacy codes and hex colors as #RRGGBB, messages that start with &lt;mm&gt; are parsed with MiniMessage instead
+     * In MiniMessage messages the primary and secondary colors are available as &lt;p&gt; and &lt;s&gt; as well as &amp;p and &amp;s,
+     * and #RRGGBB can still be used for hex colors
+     * <p>
+     * Components are only available on Paper, check {@link #isPaper()} and use {@link #getMessage(String)} otherwise
+     *
+     * @param key The key in the messages.yml
+     * @return Returns the message as a component
+     */
+    public Component getComponent(String key) {
+        Component component = components.get(key);
+        if (component == null) {
+            //Get the message before touching the cache, as getRawMessage may reload and clear it
+            component = parseComponent(getRawMessage(key));
+            components.put(key, component);
+        }
+        return component;
+    }
+
+    /**
+     * Get a message as an Adventure {@link Component} translated to the players locale, see {@link #getComponent(String)}
+     * Translations are cached in the same way, messages that are the same as messages.yml share its component
+     *
+     * @param key    The key in the messages.yml
+     * @param player The player whose locale should be used
+     * @return Returns the message as a component
+     */
+    public Component getComponent(String key, Player player) {
+        return getComponent(key, getBundle(getLocale(player)));
+    }
+
+    private Component getComponent(String key, LocaleBundle bundle) {
+        if (bundle == null)
+            return getComponent(key);
+        Component component = bundle.components.get(key);
+        if (component == null) {
+            String raw = bundle.getChangedMessage(key);
+            //Entries that are the same as messages.yml share the default component
+            component = raw == null ? getComponent(key) : parseComponent(raw);
+            bundle.components.put(key, component);
+        }
+        return component;
+    }
+
+    /**
+     * Get the translation for a locale, trying the full locale, e.g. messages_de_de.yml, and then the language, e.g. messages_de.yml
+     *
+     * @param locale The locale of the player
+     * @return The translation, or null if there is none and messages.yml should be used
+     */
+    private LocaleBundle getBundle(Locale locale) {
+        if (locale == null)
+            return null;
+        String name = locale.toString().toLowerCase(Locale.ROOT);
+        LocaleBundle bundle = locales.get(name);
+        if (bundle == null) {
+            File file = new File(core.getDataFolder(), "messages_" + name + ".yml");
+            if (file.exists()) {
+                bundle = new LocaleBundle(YamlConfiguration.loadConfiguration(file));
+            } else if (!locale.getLanguage().isEmpty() && !locale.getLanguage().equals(name)) {
+                bundle = getBundle(Locale.of(locale.getLanguage()));
+            }
+            locales.putIfAbsent(name, bundle == null ? noBundle : bundle);
+            bundle = locales.get(name);
+        }
+        return bundle == noBundle ? null : bundle;
+    }
+
+    /**
+     * Get the locale of a player, Player#locale() is only available on Paper so the Spigot string is parsed instead
+     */
+    private Locale getLocale(Player player) {
+        String locale = player.getLocale();
+        //The client sends locales such as en_us, language tags use a dash instead
+        return locale == null || locale.isEmpty() ? null : Locale.forLanguageTag(locale.replace('_', '-'));
+    }
+
+    private LocaleBundle getBundle(CommandSender sender) {
+        return sender instanceof Player ? getBundle(getLocale((Player) sender)) : null;
+    }
+
+    /**
+     * Parse a message into a component, using MiniMessage if it starts with &lt;mm&gt;
+     * MiniMessage has to be chosen explicitly, since existing messages such as usage strings can contain &lt;tags&gt;
+     *
+     * @param msg The raw message from the messages.yml
+     * @return The parsed component
+     */
+    private Component parseComponent(String msg) {
+        if (!isMiniMessage(msg))
+            return getLegacySerializer().deserialize(colorMessage(msg));
+        TagResolver colors = TagResolver.resolver(
+                TagResolver.resolver("p", Tag.styling(builder -> builder.merge(getLegacyStyle(core.primaryColor)))),
+                TagResolver.resolver("s", Tag.styling(builder -> builder.merge(getLegacyStyle(core.secondaryColor)))));
+        return MiniMessage.miniMessage().deserialize(translateToMiniMessage(msg), colors);
+    }
+
+    /**
+     * Check if a message should be parsed with MiniMessage
+     */
+    private boolean isMiniMessage(String msg) {
+        return msg.startsWith(MINI_MESSAGE_PREFIX);
+    }
+
+    /**
+     * Remove the MiniMessage prefix and swap &amp;p, &amp;s and #RRGGBB for the tags that MiniMessage understands
+     */
+    private String translateToMiniMessage(String msg) {
+        int length = msg.length();
+        StringBuilder builder = new StringBuilder(length + 16);
+        for (int i = MINI_MESSAGE_PREFIX.length(); i < length; i++) {
+            char c = msg.charAt(i);
+            if (c == '&' && i + 1 < length && (msg.charAt(i + 1) == 'p' || msg.charAt(i + 1) == 's')) {
+                builder.append('<').append(msg.charAt(i + 1)).append('>');
+                i++;
+            } else if (c == '#' && msg.charAt(i - 1) != '<' && isHexColor(msg, i + 1)) {
+                //Hex colors that are already written as tags, e.g. <#RRGGBB>, are left alone
+                builder.append('<').append(msg, i, i + 7).append('>');
+                i += 6;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get the serializer used to turn legacy color codes into components, it is only created when first used
+     * since the Adventure classes it needs don't exist on Spigot
+     */
+    private LegacyComponentSerializer getLegacySerializer() {
+        if (legacySerializer == null)
+            legacySerializer = LegacyComponentSerializer.builder().character(ChatColor.COLOR_CHAR).hexColors()
+                    .useUnusualXRepeatedCharacterHexFormat().build();
+        return legacySerializer;
+    }
+
+    /**
+     * Get the style that a legacy color string, such as the primary color, applies to the text after it
+     */
+    private Style getLegacyStyle(String legacy) {
+        Component component = getLegacySerializer().deserialize(legacy + " ");
+        Style style = component.style();
+        while (!component.children().isEmpty()) {
+            component = component.children().get(component.children().size() - 1);
+            style = style.merge(component.style());
+        }
+        return style;
+    }
+
+    /**
+     * Send a message from the messages.yml to many players at once, e.g. Bukkit.getOnlinePlayers()
+     * The message is only parsed once, if it has no placeholders the same component is sent to everyone,
+     * otherwise only the placeholders are resolved for each recipient
+     * <p>
+     * Players are sent the translation for their locale, each translation is also only parsed once
+     * On Folia placeholders are resolved on the thread that owns each player
+     * On Spigot the messages are sent as strings from {@link #getMessage(String, OfflinePlayer)} instead
+     *
+     * @param key        The key in the messages.yml
+     * @param recipients The players and other senders to send the message to
+     */
+    public void broadcast(String key, Collection<? extends CommandSender> recipients) {
+        for (CommandSender recipient : recipients) {
+            if (!paper) {
+                recipient.sendMessage(recipient instanceof Player ? getMessage(key, (Player) recipient) : getMessage(key));
+                continue;
+            }
+            LocaleBundle bundle = getBundle(recipient);
+            MessageTemplate template = getTemplate(key, bundle);
+            if (template.isStatic())
+                recipient.sendMessage(template.render(recipient));
+            else if (core.tasks.isFolia())
+                core.tasks.runTaskForSender(() -> recipient.sendMessage(template.render(recipient)), recipient);
+            else
+                recipient.sendMessage(template.render(recipient));
+        }
+    }
+
+    private MessageTemplate getTemplate(String key) {
+        MessageTemplate template = templates.get(key);
+        if (template == null) {
+            //Get the message before touching the cache, as getRawMessage may reload and clear it
+            template = new MessageTemplate(getRawMessage(key));
+            templates.put(key, template);
+        }
+        return template;
+    }
+
+    private MessageTemplate getTemplate(String key, LocaleBundle bundle) {
+        if (bundle == null)
+            return getTemplate(key);
+        MessageTemplate template = bundle.templates.get(key);
+        if (template == null) {
+            String raw = bundle.getChangedMessage(key);
+            template = raw == null ? getTemplate(key) : new MessageTemplate(raw);
+            bundle.templates.put(key, template);
+        }
+        return template;
     }
 
     /**
      * Colorize any string with color codes, this is used to support the p and s color codes that you might retrieve directly
+     * Hex colors in the format #RRGGBB and legacy codes starting with & are also translated
      *
      * @param msg The string you wish to colorize
      * @return Returns a colored string
      */
     public String colorMessage(String msg) {
-        msg = translateHexColorCodes(msg);
-        return ChatColor.translateAlternateColorCodes('&', msg.replace("&p", core.primaryColor)
-                .replace("&s", core.secondaryColor));
+        return colorMessage(msg, core.primaryColor, core.secondaryColor);
     }
 
     /**
-     * Translate hex color codes that start with #
-     * Derived from https://github.com/SpigotMC/BungeeCord/pull/2883#issuecomment-653955600
+     * Colorize a string in a single pass, &amp;p and &amp;s are replaced with the colors given
      *
-     * @param msg the message to be colored
-     * @return returns the text with the color approved
+     * @param msg            The string you wish to colorize
+     * @param primaryColor   The color to use for &amp;p
+     * @param secondaryColor The color to use for &amp;s
+     * @return Returns a colored string
+     */
+    static String colorMessage(String msg, String primaryColor, String secondaryColor) {
+        int length = msg.length();
+        //Each hex color grows by 7 characters, leave room for a couple without resizing
+        StringBuilder builder = new StringBuilder(length + 16);
+        for (int i = 0; i < length; i++) {
+            char c = msg.charAt(i);
+            if (c == '&' && i + 1 < length) {
+                char code = msg.charAt(i + 1);
+                if (code == 'p') {
+                    builder.append(primaryColor);
+                    i++;
+                    continue;
+                } else if (code == 's') {
+                    builder.append(secondaryColor);
+                    i++;
+                    continue;
+                } else if (isColorCode(code)) {
+                    //Lower case to match ChatColor#translateAlternateColorCodes
+                    builder.append(ChatColor.COLOR_CHAR).append(Character.toLowerCase(code));
+                    i++;
+                    continue;
+                }
+            } else if (c == '#' && isHexColor(msg, i + 1)) {
+                //#RRGGBB becomes the x code followed by each digit as its own code, the same as &x&R&R&G&G&B&B
+                builder.append(ChatColor.COLOR_CHAR).append('x');
+                for (int j = i + 1; j <= i + 6; j++) {
+                    builder.append(ChatColor.COLOR_CHAR).append(msg.charAt(j));
+                }
+                i += 6;
+                continue;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Check if a character is a valid legacy color or format code, including x for hex colors
+     */
+    private static boolean isColorCode(char c) {
+        return isHexDigit(c) || (c >= 'k' && c <= 'o') || (c >= 'K' && c <= 'O')
+                || c == 'r' || c == 'R' || c == 'x' || c == 'X';
+    }
+
+    /**
+     * Check if there are 6 hex digits starting at the given index
      */
-    private String translateHexColorCodes(String msg) {
-        final Pattern hexPattern = Pattern.compile("#" + "([A-Fa-f0-9]{6})");
-        Matcher matcher = hexPattern.matcher(msg);
-        StringBuilder stringBuilder = new StringBuilder(msg.length() + 4 * 8);
-        while (matcher.find()) {
-            String group = matcher.group(1);
-            matcher.appendReplacement(stringBuilder, ChatColor.COLOR_CHAR + "x"
-                    + ChatColor.COLOR_CHAR + group.charAt(0) + ChatColor.COLOR_CHAR + group.charAt(1)
-                    + ChatColor.COLOR_CHAR + group.charAt(2) + ChatColor.COLOR_CHAR + group.charAt(3)
-                    + ChatColor.COLOR_CHAR + group.charAt(4) + ChatColor.COLOR_CHAR + group.charAt(5)
-            );
+    private static boolean isHexColor(String msg, int start) {
+        if (start + 6 > msg.length())
+            return false;
+        for (int i = start; i < start + 6; i++) {
+            if (!isHexDigit(msg.charAt(i)))
+                return false;
         }
-        return matcher.appendTail(stringBuilder).toString();
+        return true;
     }
 
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
 
     /**
      * A utility method to replace placeholders from PAPI
@@ -218,4 +592,80 @@ public class LapisCoreConfiguration {
             return s;
     }
 
+    /**
+     * A message that is parsed once with its PlaceholderAPI placeholders left in as text
+     * Only the placeholders are resolved for each recipient, and they take on the style of the text around them
+     */
+    private class MessageTemplate {
+
+        private final Component parsed;
+        //Matches any of the placeholders in the message, null if there are none
+        private final Pattern placeholders;
+
+        MessageTemplate(String msg) {
+            Set<String> found = new LinkedHashSet<>();
+            if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI")) {
+                int open = msg.indexOf('%');
+                while (open >= 0) {
+                    int close = msg.indexOf('%', open + 1);
+                    if (close < 0)
+                        break;
+                    if (close == open + 1) {
+                        //%% is not a placeholder, the second % may start one
+                        open = close;
+                        continue;
+                    }
+                    found.add(Pattern.quote(msg.substring(open, close + 1)));
+                    open = msg.indexOf('%', close + 1);
+                }
+            }
+            parsed = parseComponent(msg);
+            placeholders = found.isEmpty() ? null : Pattern.compile(String.join("|", found));
+        }
+
+        boolean isStatic() {
+            return placeholders == null;
+        }
+
+        /**
+         * Resolve the placeholders for a recipient, the values are read as legacy text so they can't inject MiniMessage tags
+         */
+        Component render(CommandSender recipient) {
+            if (placeholders == null)
+                return parsed;
+            OfflinePlayer op = recipient instanceof OfflinePlayer ? (OfflinePlayer) recipient : null;
+            Map<String, Component> values = new HashMap<>();
+            return parsed.replaceText(TextReplacementConfig.builder().match(placeholders)
+                    .replacement((match, builder) -> values.computeIfAbsent(match.group(), placeholder ->
+                            getLegacySerializer().deserialize(colorMessage(PlaceholderAPIHook.processPlaceholders(op, placeholder)))))
+                    .build());
+        }
+    }
+
+    /**
+     * A translation loaded from a messages_ file, along with the messages parsed from it
+     */
+    private class LocaleBundle {
+
+        private final YamlConfiguration messages;
+        private final Map<String, Component> components = new ConcurrentHashMap<>();
+        private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+
+        LocaleBundle(YamlConfiguration messages) {
+            this.messages = messages;
+        }
+
+        /**
+         * Get a message from this translation
+         *
+         * @return The translated message, or null if it is missing or the same as messages.yml
+         */
+        String getChangedMessage(String key) {
+            String raw = messages.getString(key);
+            if (raw == null || raw.equals(LapisCoreConfiguration.this.messages.getString(key)))
+                return null;
+            return raw;
+        }
+    }
+
 }
@@ -98,6 +98,16 @@ public class LapisCorePlugin extends JavaPlugin {
         return instance;
     }
 
+    /**
+     * Reload the config.yml, the sounds in a registered {@link LapisCoreConfiguration} are reloaded with it
+     */
+    @Override
+    public void reloadConfig() {
+        super.reloadConfig();
+        if (config != null)
+            config.reloadSounds();
+    }
+
     /**
      * A default onEnable to send a success message, can be called with using super key word
      */
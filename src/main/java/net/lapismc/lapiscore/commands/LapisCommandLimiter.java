@@ -0,0 +1,189 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands;
+
+import net.lapismc.lapiscore.LapisCorePlugin;
+import net.lapismc.lapiscore.permissions.LapisPermission;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handles cooldowns and rate limits for a {@link LapisCoreCommand}
+ * Each player has a single timestamp per limit which is updated with compare and set, so no locks are taken
+ * Expired entries are removed whenever a player leaves the server
+ */
+public class LapisCommandLimiter implements Listener {
+
+    private final LapisCorePlugin core;
+    //The time at which each player may next use the command
+    private final ConcurrentHashMap<UUID, AtomicLong> cooldowns = new ConcurrentHashMap<>();
+    //The theoretical arrival time for each players token bucket, see tryRateLimit
+    private final ConcurrentHashMap<UUID, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private long cooldownMillis;
+    private LapisPermission cooldownPermission;
+    private int uses;
+    private LapisPermission usesPermission;
+    private long periodMillis;
+
+    /**
+     * Create a limiter with no limits set, this registers a listener to clean up when players leave
+     *
+     * @param core The plugin to register the listener to and to check permissions with
+     */
+    public LapisCommandLimiter(LapisCorePlugin core) {
+        this.core = core;
+        Bukkit.getPluginManager().registerEvents(this, core);
+    }
+
+    /**
+     * Create a limiter without registering the quit listener, used for testing
+     */
+    LapisCommandLimiter() {
+        this.core = null;
+    }
+
+    /**
+     * Set a fixed cooldown between each use of the command
+     *
+     * @param cooldownMillis The cooldown in milliseconds, 0 to disable
+     */
+    public void setCooldown(long cooldownMillis) {
+        this.cooldownMillis = cooldownMillis;
+        this.cooldownPermission = null;
+    }
+
+    /**
+     * Set a cooldown that is read from the players permission
+     *
+     * @param cooldownPermission The {@link LapisPermission} whose value is the cooldown in seconds, 0 means no cooldown
+     */
+    public void setCooldown(LapisPermission cooldownPermission) {
+        this.cooldownPermission = cooldownPermission;
+    }
+
+    /**
+     * Limit the command to a number of uses in a period, uses are refilled evenly over the period
+     *
+     * @param uses         The number of uses allowed in a period, 0 to disable
+     * @param periodMillis The length of the period in milliseconds
+     */
+    public void setRateLimit(int uses, long periodMillis) {
+        this.uses = uses;
+        this.usesPermission = null;
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * Limit the command to a number of uses in a period that is read from the players permission
+     *
+     * @param usesPermission The {@link LapisPermission} whose value is the number of uses per period, 0 means no limit
+     * @param periodMillis   The length of the period in milliseconds
+     */
+    public void setRateLimit(LapisPermission usesPermission, long periodMillis) {
+        this.usesPermission = usesPermission;
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * Attempt to use the command, this will record the use if it is allowed
+     *
+     * @param uuid The UUID of the player using the command
+     * @return 0 if the player may use the command, otherwise the number of milliseconds until they can
+     */
+    public long tryAcquire(UUID uuid) {
+        return tryAcquire(uuid, System.currentTimeMillis());
+    }
+
+    long tryAcquire(UUID uuid, long now) {
+        //Check the cooldown without changing it first, this is the cheapest way to reject spam
+        AtomicLong readyAt = cooldowns.get(uuid);
+        if (readyAt != null && readyAt.get() > now)
+            return readyAt.get() - now;
+        //The cooldown is claimed before a use is taken from the rate limit, so a command rejected by the cooldown costs no uses
+        long cooldown = cooldownPermission == null ? cooldownMillis : getValue(uuid, cooldownPermission) * 1000L;
+        long previous = 0;
+        if (cooldown > 0) {
+            readyAt = cooldowns.computeIfAbsent(uuid, k -> new AtomicLong());
+            while (true) {
+                previous = readyAt.get();
+                if (previous > now)
+                    return previous - now;
+                if (readyAt.compareAndSet(previous, now + cooldown))
+                    break;
+            }
+        }
+        long wait = tryRateLimit(uuid, now);
+        //Give the cooldown back if the rate limit rejected the command, unless another use has already changed it
+        if (wait > 0 && cooldown > 0)
+            readyAt.compareAndSet(now + cooldown, previous);
+        return wait;
+    }
+
+    /**
+     * A token bucket stored as a single timestamp, known as the generic cell rate algorithm
+     * Each use moves the timestamp forward by the time it takes to refill one use,
+     * a use is rejected if the timestamp would be more than a full bucket ahead of now
+     */
+    private long tryRateLimit(UUID uuid, long now) {
+        int allowedUses = usesPermission == null ? uses : getValue(uuid, usesPermission);
+        if (allowedUses <= 0 || periodMillis <= 0)
+            return 0;
+        long interval = Math.max(1, periodMillis / allowedUses);
+        long tolerance = periodMillis - interval;
+        AtomicLong bucket = buckets.computeIfAbsent(uuid, k -> new AtomicLong());
+        while (true) {
+            long current = bucket.get();
+            long arrival = Math.max(current, now);
+            if (arrival - now > tolerance)
+                return arrival - now - tolerance;
+            if (bucket.compareAndSet(current, arrival + interval))
+                return 0;
+        }
+    }
+
+    private int getValue(UUID uuid, LapisPermission permission) {
+        if (core.perms == null)
+            return permission.getDefaultValue();
+        return core.perms.getPermissionValue(uuid, permission);
+    }
+
+    /**
+     * Remove all stored uses for a player, e.g. to let an admin skip a cooldown
+     *
+     * @param uuid The UUID of the player to reset
+     */
+    public void reset(UUID uuid) {
+        cooldowns.remove(uuid);
+        buckets.remove(uuid);
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent e) {
+        //Entries that have expired behave the same as missing ones, so they can be dropped safely
+        //Unexpired entries are kept so that players can't skip a cooldown by relogging, they are dropped on a later quit
+        long now = System.currentTimeMillis();
+        cooldowns.values().removeIf(readyAt -> readyAt.get() <= now);
+        buckets.values().removeIf(arrival -> arrival.get() <= now);
+    }
+
+}
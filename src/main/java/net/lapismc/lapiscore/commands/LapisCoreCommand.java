@@ -19,6 +19,8 @@ package net.lapismc.lapiscore.commands;
 import net.lapismc.lapiscore.LapisCoreConfiguration;
 import net.lapismc.lapiscore.LapisCorePermissions;
 import net.lapismc.lapiscore.LapisCorePlugin;
+import net.lapismc.lapiscore.commands.tabcomplete.LapisCoreTabCompleter;
+import net.lapismc.lapiscore.commands.tree.LapisCommandTree;
 import net.lapismc.lapiscore.permissions.LapisPermission;
 import org.bukkit.Bukkit;
 import org.bukkit.command.*;
@@ -28,14 +30,32 @@ import org.bukkit.entity.Player;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
 
 /**
  * An utility class to make custom commands that are not in the plugin.yml
  */
 public abstract class LapisCoreCommand extends BukkitCommand {
 
+    /**
+     * The key in the messages.yml of the message sent when a command is limited, see {@link #onLimited(CommandSender, long)}
+     */
+    public static final String LIMITED_MESSAGE_KEY = "Error.CommandLimited";
+    /**
+     * The key in the messages.yml of the message sent when a sender lacks permission for a node of the command tree,
+     * see {@link #onNoPermission(CommandSender, String, String[])}
+     */
+    public static final String NO_PERMISSION_MESSAGE_KEY = "Error.NoPermission";
     private final LapisCorePlugin core;
     private TabCompleter tabCompleter;
+    private LapisCommandTree commandTree;
+    private LapisCommandLimiter limiter;
+    private ExecutionMode executionMode = ExecutionMode.SYNC;
+    //The last queued invocation for each sender, used to stop one sender's commands from running at the same time
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> senderQueues = new ConcurrentHashMap<>();
     private final List<String> takenAliases;
 
     /**
@@ -69,6 +89,15 @@ public abstract class LapisCoreCommand extends BukkitCommand {
         CommandRegistry.registerCommand(this);
     }
 
+    /**
+     * Get the plugin that this command is registered to
+     *
+     * @return The {@link LapisCorePlugin} that registered this command
+     */
+    public LapisCorePlugin getCore() {
+        return core;
+    }
+
     /**
      * Get a list of aliases that this command has attempted to override from other plugins
      *
@@ -133,6 +162,111 @@ public abstract class LapisCoreCommand extends BukkitCommand {
         tabCompleter = completer;
     }
 
+    /**
+     * Registers a tree of subcommands and typed arguments to be dispatched before {@link #onCommand(CommandSender, String[])}
+     * If no tab completer has been registered, the tree will also be used for tab completion
+     * The tree is compiled here, so it should be complete before it is registered
+     *
+     * @param tree The tree of subcommands for this command
+     */
+    protected void registerCommandTree(LapisCommandTree tree) {
+        tree.compile();
+        commandTree = tree;
+        if (tabCompleter == null) {
+            LapisCoreTabCompleter completer = new LapisCoreTabCompleter();
+            completer.registerTopLevelOptions(this, tree.getTabOptions());
+            registerTabCompleter(completer);
+        }
+    }
+
+    /**
+     * Set where the body of this command should run, see {@link ExecutionMode}
+     * When not using {@link ExecutionMode#SYNC} use {@link #sendMessageSync(CommandSender, String...)}
+     * and {@link #runForSender(CommandSender, Runnable)} to interact with the sender
+     *
+     * @param executionMode The mode to execute this command with
+     */
+    protected void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Get where the body of this command runs
+     *
+     * @return the {@link ExecutionMode} of this command
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Set a fixed cooldown between each use of this command by a player, console is never limited
+     *
+     * @param cooldownMillis The cooldown in milliseconds, 0 to disable
+     */
+    protected void setCooldown(long cooldownMillis) {
+        getLimiter().setCooldown(cooldownMillis);
+    }
+
+    /**
+     * Set a cooldown between each use of this command that depends on the players permission, console is never limited
+     *
+     * @param cooldownPermission The {@link LapisPermission} whose value is the cooldown in seconds, 0 means no cooldown
+     */
+    protected void setCooldown(LapisPermission cooldownPermission) {
+        getLimiter().setCooldown(cooldownPermission);
+    }
+
+    /**
+     * Limit how many times a player can use this command in a period, console is never limited
+     *
+     * @param uses         The number of uses allowed in a period, 0 to disable
+     * @param periodMillis The length of the period in milliseconds
+     */
+    protected void setRateLimit(int uses, long periodMillis) {
+        getLimiter().setRateLimit(uses, periodMillis);
+    }
+
+    /**
+     * Limit how many times a player can use this command in a period based on their permission, console is never limited
+     *
+     * @param usesPermission The {@link LapisPermission} whose value is the number of uses per period, 0 means no limit
+     * @param periodMillis   The length of the period in milliseconds
+     */
+    protected void setRateLimit(LapisPermission usesPermission, long periodMillis) {
+        getLimiter().setRateLimit(usesPermission, periodMillis);
+    }
+
+    /**
+     * Get the limiter used for this commands cooldowns and rate limits, it is created the first time it is needed
+     *
+     * @return The {@link LapisCommandLimiter} for this command
+     */
+    protected LapisCommandLimiter getLimiter() {
+        if (limiter == null)
+            limiter = new LapisCommandLimiter(core);
+        return limiter;
+    }
+
+    /**
+     * Called when a player uses this command before their cooldown or rate limit allows
+     * The message is read from {@link #LIMITED_MESSAGE_KEY} in the messages.yml, where %seconds% is replaced with the time left,
+     * a default English message is used if the messages.yml doesn't have the key
+     *
+     * @param sender     The player who used the command
+     * @param waitMillis How long they must wait before they can use the command again
+     */
+    protected void onLimited(CommandSender sender, long waitMillis) {
+        long seconds = (waitMillis + 999) / 1000;
+        String message;
+        if (core.config != null && core.config.getMessages().contains(LIMITED_MESSAGE_KEY))
+            message = core.config.getMessage(LIMITED_MESSAGE_KEY, sender instanceof Player ? (Player) sender : null);
+        else
+            message = core.secondaryColor + "You must wait " + core.primaryColor + "%seconds%"
+                    + core.secondaryColor + " second(s) before using this command again";
+        sender.sendMessage(message.replace("%seconds%", String.valueOf(seconds)));
+    }
+
     /**
      * Check if a sender is permitted, requires {@link LapisCorePermissions} to be registered in {@link LapisCorePlugin}
      *
@@ -159,8 +293,36 @@ public abstract class LapisCoreCommand extends BukkitCommand {
      * @param keys   The keys for the messages in the messages.yml
      */
     protected void sendMessage(CommandSender sender, String... keys) {
-        for (String key : keys)
-            sender.sendMessage(core.config.getMessage(key));
+        for (String key : keys) {
+            //Components can only be sent on Paper
+            if (!core.config.isPaper())
+                sender.sendMessage(core.config.getMessage(key));
+            else
+                sender.sendMessage(sender instanceof Player ? core.config.getComponent(key, (Player) sender)
+                        : core.config.getComponent(key));
+        }
+    }
+
+    /**
+     * Send message(s) from the messages.yml to the command sender on the thread that owns them
+     * Use this instead of {@link #sendMessage(CommandSender, String...)} from commands that don't run synchronously
+     *
+     * @param sender The command sender who you wish to send a message to
+     * @param keys   The keys for the messages in the messages.yml
+     */
+    protected void sendMessageSync(CommandSender sender, String... keys) {
+        runForSender(sender, () -> sendMessage(sender, keys));
+    }
+
+    /**
+     * Run a task on the thread that owns the command sender, e.g. to teleport a player once data has loaded
+     * This uses the entity scheduler on Folia and the main thread on Bukkit
+     *
+     * @param sender   The sender the task relates to
+     * @param runnable The task to run
+     */
+    protected void runForSender(CommandSender sender, Runnable runnable) {
+        core.tasks.runTaskForSender(runnable, sender);
     }
 
     /**
@@ -180,10 +342,88 @@ public abstract class LapisCoreCommand extends BukkitCommand {
 
     @Override
     public boolean execute(CommandSender sender, String commandLabel, String[] args) {
-        onCommand(sender, commandLabel, args);
+        if (limiter != null && sender instanceof Player) {
+            long wait = limiter.tryAcquire(((Player) sender).getUniqueId());
+            if (wait > 0) {
+                onLimited(sender, wait);
+                return true;
+            }
+        }
+        if (executionMode == ExecutionMode.SYNC) {
+            dispatch(sender, commandLabel, args);
+        } else {
+            queueForSender(sender, () -> dispatch(sender, commandLabel, args));
+        }
         return true;
     }
 
+    /**
+     * Queue a command to run off the main thread after any earlier commands from the same sender have finished
+     */
+    private void queueForSender(CommandSender sender, Runnable body) {
+        String key = sender instanceof Player ? ((Player) sender).getUniqueId().toString() : sender.getName();
+        Executor executor = executionMode == ExecutionMode.VIRTUAL ? core.tasks::runVirtualTask
+                : runnable -> core.tasks.runTask(runnable, true);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Runnable step = () -> {
+            try {
+                body.run();
+            } catch (Exception e) {
+                core.getLogger().log(Level.SEVERE, "An error occurred while executing /" + getName(), e);
+            } finally {
+                //Errors are still thrown, but the next command from this sender must be allowed to run
+                done.complete(null);
+            }
+        };
+        Runnable start = () -> {
+            try {
+                executor.execute(step);
+            } catch (RuntimeException e) {
+                //The task was rejected, e.g. while the plugin is disabling, so it will never complete the step itself
+                done.complete(null);
+                core.getLogger().log(Level.SEVERE, "Failed to run /" + getName(), e);
+            }
+        };
+        //Steps only ever complete normally, so each command waits for the one before it and nothing is skipped
+        CompletableFuture<Void> previous = senderQueues.put(key, done);
+        if (previous == null)
+            start.run();
+        else
+            previous.thenRun(start);
+        //Remove the sender once their queue is empty so that we don't keep every sender forever
+        done.thenRun(() -> senderQueues.remove(key, done));
+    }
+
+    private void dispatch(CommandSender sender, String commandLabel, String[] args) {
+        if (commandTree != null) {
+            LapisCommandTree.Result result = commandTree.dispatch(sender, args, permission -> isPermitted(sender, permission));
+            if (result == LapisCommandTree.Result.EXECUTED)
+                return;
+            if (result == LapisCommandTree.Result.NO_PERMISSION) {
+                onNoPermission(sender, commandLabel, args);
+                return;
+            }
+        }
+        onCommand(sender, commandLabel, args);
+    }
+
+    /**
+     * Called when a sender tries to use a node of the command tree that they don't have permission for
+     * The message is read from {@link #NO_PERMISSION_MESSAGE_KEY} in the messages.yml,
+     * a default English message is used if the messages.yml doesn't have the key
+     * Override this and call {@link #onCommand(CommandSender, String, String[])} if your command does its own permission checks
+     *
+     * @param sender       The sender of the command, could be a player or console
+     * @param commandLabel The string representation of the form of the command being used
+     * @param args         The arguments provided with the command
+     */
+    protected void onNoPermission(CommandSender sender, String commandLabel, String[] args) {
+        if (core.config != null && core.config.getMessages().contains(NO_PERMISSION_MESSAGE_KEY))
+            sender.sendMessage(core.config.getMessage(NO_PERMISSION_MESSAGE_KEY, sender instanceof Player ? (Player) sender : null));
+        else
+            sender.sendMessage(core.secondaryColor + "You don't have permission to use this command");
+    }
+
     /**
      * This is here to allow legacy commands to be moved over to this API easily
      *
@@ -197,6 +437,7 @@ public abstract class LapisCoreCommand extends BukkitCommand {
 
     /**
      * Implement this to process commands
+     * If a command tree is registered, this is only called when the tree doesn't match the arguments
      *
      * @param sender The sender of the command, could be a player or console
      * @param args   The arguments provided with the command
@@ -221,6 +462,24 @@ public abstract class LapisCoreCommand extends BukkitCommand {
         }
     }
 
+    /**
+     * Where the body of a command is run
+     */
+    public enum ExecutionMode {
+        /**
+         * Run on the thread that the command was sent from, this is the default
+         */
+        SYNC,
+        /**
+         * Run on an async task from the {@link net.lapismc.lapiscore.utils.LapisTaskHandler}
+         */
+        ASYNC,
+        /**
+         * Run on a new virtual thread, best for commands that mostly wait on storage or network I/O
+         */
+        VIRTUAL
+    }
+
     private class LapisCoreCommandExecutor implements CommandExecutor {
 
         @Override
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands.tabcomplete;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.lapismc.lapiscore.LapisCorePlugin;
+import net.lapismc.lapiscore.permissions.LapisPermission;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A wrapper for a {@link LapisTabOption} that remembers the options and children it returned for each sender
+ * This is useful for options that hit storage or permissions, since tab completion is triggered on every keystroke
+ * Cached values are kept for a short time and are removed when the player leaves the server
+ */
+public class CachedLapisTabOption implements LapisTabOption {
+
+    //Weakly held so that wrappers which are no longer used can still be garbage collected
+    private static final Set<CachedLapisTabOption> wrappers = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    //One listener clears every wrapper, instead of each wrapper registering its own and never being unregistered
+    private static QuitListener quitListener;
+    private static LapisCorePlugin listenerPlugin;
+    private final LapisTabOption option;
+    private final Cache<String, List<String>> optionsCache;
+    private final Cache<String, List<LapisTabOption>> childrenCache;
+
+    /**
+     * Wrap an option with the default cache time of 5 seconds
+     *
+     * @param core   The {@link LapisCorePlugin} used to listen for players leaving
+     * @param option The option whose results should be cached
+     */
+    public CachedLapisTabOption(LapisCorePlugin core, LapisTabOption option) {
+        this(core, option, 5000);
+    }
+
+    /**
+     * Wrap an option with a custom cache time
+     *
+     * @param core         The {@link LapisCorePlugin} used to listen for players leaving
+     * @param option       The option whose results should be cached
+     * @param expiryMillis How long, in milliseconds, results should be kept for each sender
+     */
+    public CachedLapisTabOption(LapisCorePlugin core, LapisTabOption option, long expiryMillis) {
+        this.option = option;
+        optionsCache = CacheBuilder.newBuilder().expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS).build();
+        childrenCache = CacheBuilder.newBuilder().expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS).build();
+        wrappers.add(this);
+        registerQuitListener(core);
+    }
+
+    @Override
+    public List<String> getOptions(CommandSender sender) {
+        String key = getKey(sender);
+        List<String> options = optionsCache.getIfPresent(key);
+        if (options == null) {
+            options = option.getOptions(sender);
+            //Guava caches don't accept null values, so we just pass them through uncached
+            if (options != null)
+                optionsCache.put(key, options);
+        }
+        return options;
+    }
+
+    @Override
+    public List<LapisTabOption> getChildren(CommandSender sender) {
+        String key = getKey(sender);
+        List<LapisTabOption> children = childrenCache.getIfPresent(key);
+        if (children == null) {
+            children = option.getChildren(sender);
+            if (children != null)
+                childrenCache.put(key, children);
+        }
+        return children;
+    }
+
+    @Override
+    public LapisPermission getRequiredPermission() {
+        return option.getRequiredPermission();
+    }
+
+    /**
+     * Remove any cached values for the given sender, use this if you know their options have changed
+     *
+     * @param sender The sender whose cached values should be removed
+     */
+    public void invalidate(CommandSender sender) {
+        String key = getKey(sender);
+        optionsCache.invalidate(key);
+        childrenCache.invalidate(key);
+    }
+
+    /**
+     * Remove all cached values for all senders
+     */
+    public void invalidateAll() {
+        optionsCache.invalidateAll();
+        childrenCache.invalidateAll();
+    }
+
+    private static synchronized void registerQuitListener(LapisCorePlugin core) {
+        //The listener is unregistered when the plugin that registered it is disabled, so register it again if needed
+        if (quitListener != null && listenerPlugin.isEnabled())
+            return;
+        quitListener = new QuitListener();
+        listenerPlugin = core;
+        Bukkit.getPluginManager().registerEvents(quitListener, core);
+    }
+
+    private String getKey(CommandSender sender) {
+        //Players are keyed by UUID so that name changes can't mix up results, everything else uses its name
+        if (sender instanceof Player)
+            return ((Player) sender).getUniqueId().toString();
+        return sender.getName();
+    }
+
+    private static class QuitListener implements Listener {
+
+        @EventHandler
+        public void onPlayerQuit(PlayerQuitEvent e) {
+            //Iterating a synchronized set must hold its lock
+            synchronized (wrappers) {
+                for (CachedLapisTabOption wrapper : wrappers)
+                    wrapper.invalidate(e.getPlayer());
+            }
+        }
+
+    }
+
+}
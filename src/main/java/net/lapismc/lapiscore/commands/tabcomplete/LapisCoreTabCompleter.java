@@ -16,18 +16,22 @@
 
 package net.lapismc.lapiscore.commands.tabcomplete;
 
+import net.lapismc.lapiscore.LapisCorePermissions;
 import net.lapismc.lapiscore.commands.CommandRegistry;
 import net.lapismc.lapiscore.commands.LapisCoreCommand;
+import net.lapismc.lapiscore.permissions.LapisPermission;
+import net.lapismc.lapiscore.permissions.PlayerPermission;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 /**
- * A class to handle dynamic and complex tab completions for @{@link LapisCoreCommand} classes
+ * A class to handle dynamic and complex tab completions for {@link LapisCoreCommand} classes
  */
 public class LapisCoreTabCompleter implements TabCompleter {
 
@@ -74,26 +78,35 @@ public class LapisCoreTabCompleter implements TabCompleter {
         }
         List<String> result = new ArrayList<>();
         List<LapisTabOption> options = topLevelOptions.get(cmd);
+        //Permissions are only resolved once for this request, and only if an option actually requires one
+        PermissionFilter filter = new PermissionFilter(sender, cmd.getCore().perms);
         //If args length is 0, then they haven't typed any arguments at all yet, so we just show all top level options
         if (args.length == 0) {
             for (LapisTabOption option : options) {
-                result.addAll(option.getOptions(sender));
+                if (filter.canSee(option))
+                    result.addAll(option.getOptions(sender));
             }
         } else {
             //If they have typed any arguments, we start the recursive process of checking them
-            return recursiveSearch(options, sender, new ArrayList<>(List.of(args)));
+            return recursiveSearch(options, sender, new ArrayList<>(List.of(args)), filter);
         }
         return result;
     }
 
-    private List<String> recursiveSearch(List<LapisTabOption> options, CommandSender sender, List<String> args) {
+    private List<String> recursiveSearch(List<LapisTabOption> options, CommandSender sender, List<String> args,
+                                         PermissionFilter filter) {
         //The list we will return with completions
         List<String> result = new ArrayList<>();
         //If options is null or empty then we have reached the end of the possibilities, so we return an empty list
         //If args is empty then they haven't started typing the next word yet, so we also return an empty list
         if (options == null || options.isEmpty() || args.isEmpty())
             return result;
+        //A free form option that the current argument could be filling, used if no exact match is found
+        LapisTabOption freeFormMatch = null;
         for (LapisTabOption option : options) {
+            //Skip the whole subtree if the sender can't see this option, this avoids fetching options we won't show
+            if (!filter.canSee(option))
+                continue;
             for (String s : option.getOptions(sender)) {
                 //Null check the option, this shouldn't need to be handled, but somehow it has happened
                 if (s == null)
@@ -106,10 +119,13 @@ public class LapisCoreTabCompleter implements TabCompleter {
                     List<String> clonedArgs = new ArrayList<>(args);
                     clonedArgs.remove(0);
                     //Send these new arguments to the children to check again
-                    return recursiveSearch(children, sender, clonedArgs);
+                    return recursiveSearch(children, sender, clonedArgs, filter);
                 }
                 //We know that they haven't completed the argument, so lets check what options they have
                 if (s.startsWith("(") && s.endsWith(")")) {
+                    //If they have moved on to the next argument, this free form item has been filled in
+                    if (args.size() > 1 && freeFormMatch == null)
+                        freeFormMatch = option;
                     //It's a free from item like a name, show the suggestion
                     result.add(s);
                 } else if (s.toLowerCase().startsWith(args.get(0).toLowerCase())) {
@@ -118,6 +134,47 @@ public class LapisCoreTabCompleter implements TabCompleter {
                 }
             }
         }
+        if (freeFormMatch != null) {
+            //Nothing matched exactly, so we treat the typed argument as the value of the free form item
+            List<String> clonedArgs = new ArrayList<>(args);
+            clonedArgs.remove(0);
+            return recursiveSearch(freeFormMatch.getChildren(sender), sender, clonedArgs, filter);
+        }
         return result;
     }
+
+    /**
+     * Resolves the senders {@link PlayerPermission} at most once per tab complete request
+     * so that every gated option can be checked without another permission lookup
+     */
+    private static class PermissionFilter {
+
+        private final CommandSender sender;
+        private final LapisCorePermissions perms;
+        private PlayerPermission permission;
+        private boolean resolved;
+
+        PermissionFilter(CommandSender sender, LapisCorePermissions perms) {
+            this.sender = sender;
+            this.perms = perms;
+        }
+
+        boolean canSee(LapisTabOption option) {
+            LapisPermission required = option.getRequiredPermission();
+            //Options without a permission, and senders who aren't players, are always allowed
+            //This matches the behaviour of LapisCoreCommand#isPermitted
+            if (required == null || !(sender instanceof Player))
+                return true;
+            if (perms == null)
+                return false;
+            if (!resolved) {
+                permission = perms.calculatePermission(((Player) sender).getUniqueId());
+                resolved = true;
+            }
+            if (permission == null)
+                return false;
+            Integer value = permission.getPermissionValue(required);
+            return value != null && value > 0;
+        }
+    }
 }
@@ -16,6 +16,7 @@
 
 package net.lapismc.lapiscore.commands.tabcomplete;
 
+import net.lapismc.lapiscore.permissions.LapisPermission;
 import org.bukkit.command.CommandSender;
 
 import java.util.List;
@@ -23,6 +24,7 @@ import java.util.List;
 /**
  * This interface provides a structure for command completion levels with the ability to dynamically fetch options and their children
  * This allows very complex and adaptable command completions including permission based completions
+ * Options that are expensive to calculate can be wrapped in a {@link CachedLapisTabOption}
  */
 public interface LapisTabOption {
 
@@ -38,8 +40,18 @@ public interface LapisTabOption {
      * Get the children of this option, these are LapisTabOption classes which may have their own children
      *
      * @param sender The CommandSender typing a command
-     * @return A list of @{@link LapisTabOption} classes which represent the possible child options of the current option
+     * @return A list of {@link LapisTabOption} classes which represent the possible child options of the current option
      */
     List<LapisTabOption> getChildren(CommandSender sender);
 
+    /**
+     * Get the permission a sender needs for this option and its children to be shown
+     * Senders without the permission will not see this option, and its options and children will not be fetched
+     *
+     * @return The {@link LapisPermission} required to see this option, or null if everyone should see it
+     */
+    default LapisPermission getRequiredPermission() {
+        return null;
+    }
+
 }
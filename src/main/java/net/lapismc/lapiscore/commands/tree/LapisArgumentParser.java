@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands.tree;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Converts a single command argument into a typed value, see {@link LapisArguments} for the built-in parsers
+ *
+ * @param <T> The type of value this parser produces
+ */
+@FunctionalInterface
+public interface LapisArgumentParser<T> {
+
+    /**
+     * Attempt to parse the argument given
+     * Implementations should not throw exceptions for bad input, return null instead
+     *
+     * @param sender The sender of the command
+     * @param input  The argument as it was typed
+     * @return The parsed value, or null if the input isn't valid for this parser
+     */
+    T parse(CommandSender sender, String input);
+
+    /**
+     * Get the values that should be suggested when tab completing this argument
+     *
+     * @param sender The sender who is tab completing
+     * @return A list of suggestions, an empty list will show the arguments name instead
+     */
+    default List<String> getSuggestions(CommandSender sender) {
+        return Collections.emptyList();
+    }
+
+}
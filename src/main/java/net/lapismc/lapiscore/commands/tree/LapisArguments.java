@@ -0,0 +1,186 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands.tree;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The built-in {@link LapisArgumentParser}s for use with {@link LapisCommandNode#argument(String, LapisArgumentParser)}
+ * None of these parsers use exceptions to detect bad input, except for a duration that overflows a long which is too rare to matter
+ */
+public class LapisArguments {
+
+    /**
+     * Accepts any single argument as it was typed
+     */
+    public static final LapisArgumentParser<String> STRING = (sender, input) -> input;
+
+    /**
+     * Accepts whole numbers that fit in an int, e.g. 5 or -20
+     */
+    public static final LapisArgumentParser<Integer> INTEGER = (sender, input) -> parseInteger(input);
+
+    /**
+     * Accepts durations made of numbers and units, e.g. 30s, 5m, 1h30m or 2d
+     * A number without a unit is treated as seconds, the value is returned in milliseconds
+     */
+    public static final LapisArgumentParser<Long> DURATION = (sender, input) -> parseDuration(input);
+
+    /**
+     * Accepts the exact name of an online player
+     */
+    public static final LapisArgumentParser<Player> PLAYER = new LapisArgumentParser<>() {
+        @Override
+        public Player parse(CommandSender sender, String input) {
+            return Bukkit.getPlayerExact(input);
+        }
+
+        @Override
+        public List<String> getSuggestions(CommandSender sender) {
+            List<String> names = new ArrayList<>();
+            for (Player p : Bukkit.getOnlinePlayers()) {
+                names.add(p.getName());
+            }
+            return names;
+        }
+    };
+
+    /**
+     * Accepts the name of a loaded world
+     */
+    public static final LapisArgumentParser<World> WORLD = new LapisArgumentParser<>() {
+        @Override
+        public World parse(CommandSender sender, String input) {
+            return Bukkit.getWorld(input);
+        }
+
+        @Override
+        public List<String> getSuggestions(CommandSender sender) {
+            List<String> names = new ArrayList<>();
+            for (World w : Bukkit.getWorlds()) {
+                names.add(w.getName());
+            }
+            return names;
+        }
+    };
+
+    /**
+     * Parse an int without using {@link Integer#parseInt(String)} and catching the exception
+     *
+     * @param input The string to parse
+     * @return The int value, or null if the string isn't a valid int
+     */
+    public static Integer parseInteger(String input) {
+        int length = input.length();
+        if (length == 0)
+            return null;
+        int i = 0;
+        boolean negative = false;
+        char first = input.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (length == 1)
+                return null;
+        }
+        //A negative number can be one larger than a positive one, the long can't overflow before we stop
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < length; i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9')
+                return null;
+            result = result * 10 + (c - '0');
+            if (result > limit)
+                return null;
+        }
+        return (int) (negative ? -result : result);
+    }
+
+    /**
+     * Parse a duration such as 1h30m into milliseconds
+     * Supported units are s, m, h, d and w, a number without a unit is treated as seconds
+     *
+     * @param input The string to parse
+     * @return The duration in milliseconds, or null if the string isn't a valid duration or is too long to store
+     */
+    public static Long parseDuration(String input) {
+        try {
+            return sumDuration(input);
+        } catch (ArithmeticException e) {
+            //The total overflowed a long, rejecting it is better than a negative or wrapped duration
+            return null;
+        }
+    }
+
+    private static Long sumDuration(String input) {
+        int length = input.length();
+        if (length == 0)
+            return null;
+        long total = 0;
+        long current = 0;
+        boolean hasDigits = false;
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (c >= '0' && c <= '9') {
+                current = current * 10 + (c - '0');
+                //Anything this large is a typo, not a real duration
+                if (current > Integer.MAX_VALUE)
+                    return null;
+                hasDigits = true;
+                continue;
+            }
+            //A unit must follow a number
+            if (!hasDigits)
+                return null;
+            long multiplier;
+            switch (Character.toLowerCase(c)) {
+                case 's':
+                    multiplier = 1000L;
+                    break;
+                case 'm':
+                    multiplier = 60_000L;
+                    break;
+                case 'h':
+                    multiplier = 3_600_000L;
+                    break;
+                case 'd':
+                    multiplier = 86_400_000L;
+                    break;
+                case 'w':
+                    multiplier = 604_800_000L;
+                    break;
+                default:
+                    return null;
+            }
+            total = Math.addExact(total, Math.multiplyExact(current, multiplier));
+            current = 0;
+            hasDigits = false;
+        }
+        //Trailing numbers without a unit are seconds
+        if (hasDigits)
+            total = Math.addExact(total, Math.multiplyExact(current, 1000L));
+        return total;
+    }
+
+}
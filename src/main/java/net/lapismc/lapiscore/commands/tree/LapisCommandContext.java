@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands.tree;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the sender and the parsed arguments for a command that was dispatched by a {@link LapisCommandTree}
+ */
+public class LapisCommandContext {
+
+    private final CommandSender sender;
+    private final String[] args;
+    private final Map<String, Object> values = new HashMap<>();
+    private int consumed;
+
+    LapisCommandContext(CommandSender sender, String[] args) {
+        this.sender = sender;
+        this.args = args;
+    }
+
+    void put(String name, Object value) {
+        values.put(name, value);
+    }
+
+    void setConsumed(int consumed) {
+        this.consumed = consumed;
+    }
+
+    /**
+     * Get the sender of the command
+     *
+     * @return The sender of the command, could be a player or console
+     */
+    public CommandSender getSender() {
+        return sender;
+    }
+
+    /**
+     * Get the arguments exactly as they were typed
+     *
+     * @return The raw arguments provided with the command
+     */
+    public String[] getArgs() {
+        return args;
+    }
+
+    /**
+     * Get any arguments that were typed after the last matched node
+     * This is useful for commands that take free text at the end, such as a message
+     *
+     * @return The arguments that were not used to find the executed node, empty if they were all used
+     */
+    public String[] getRemainingArgs() {
+        return Arrays.copyOfRange(args, consumed, args.length);
+    }
+
+    /**
+     * Get the parsed value of an argument node
+     *
+     * @param name The name given to the argument node
+     * @param <T>  The type produced by the arguments {@link LapisArgumentParser}
+     * @return The parsed value, or null if the argument wasn't part of the executed path
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String name) {
+        return (T) values.get(name);
+    }
+
+    /**
+     * Check if an argument node was part of the executed path
+     *
+     * @param name The name given to the argument node
+     * @return true if a value was parsed for this argument
+     */
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands.tree;
+
+/**
+ * The code that runs when a {@link LapisCommandNode} is the last node matched by a command
+ */
+@FunctionalInterface
+public interface LapisCommandExecutor {
+
+    /**
+     * Run the command
+     *
+     * @param context The sender and parsed arguments of the command
+     */
+    void execute(LapisCommandContext context);
+
+}
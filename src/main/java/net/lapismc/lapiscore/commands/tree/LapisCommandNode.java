@@ -0,0 +1,185 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands.tree;
+
+import net.lapismc.lapiscore.commands.tabcomplete.LapisTabOption;
+import net.lapismc.lapiscore.permissions.LapisPermission;
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+
+/**
+ * A single level of a {@link LapisCommandTree}, either a literal word like "delete" or a typed argument like a player
+ * Nodes also act as {@link LapisTabOption}s so that the same tree can be used for tab completion
+ */
+public class LapisCommandNode implements LapisTabOption {
+
+    private final String name;
+    private final List<String> aliases;
+    private final LapisArgumentParser<?> parser;
+    private final List<LapisCommandNode> children = new ArrayList<>();
+    private LapisPermission permission;
+    private LapisCommandExecutor executor;
+    //These are built by compile() so that dispatch doesn't need to search the children
+    private Map<String, LapisCommandNode> literalChildren = Collections.emptyMap();
+    private LapisCommandNode[] argumentChildren = new LapisCommandNode[0];
+    private List<LapisTabOption> tabChildren = Collections.emptyList();
+
+    private LapisCommandNode(String name, List<String> aliases, LapisArgumentParser<?> parser) {
+        this.name = name;
+        this.aliases = aliases;
+        this.parser = parser;
+    }
+
+    /**
+     * Create a node that matches a fixed word, matching is not case-sensitive
+     *
+     * @param name    The word that should match this node
+     * @param aliases Any other words that should also match this node
+     * @return The new {@link LapisCommandNode}
+     */
+    public static LapisCommandNode literal(String name, String... aliases) {
+        return new LapisCommandNode(name, Arrays.asList(aliases), null);
+    }
+
+    /**
+     * Create a node that matches any argument the parser accepts
+     * The parsed value can be retrieved with {@link LapisCommandContext#get(String)} using the name given here
+     *
+     * @param name   The name of the argument, this is shown in tab complete if the parser has no suggestions
+     * @param parser The parser used to check and convert the argument, see {@link LapisArguments}
+     * @return The new {@link LapisCommandNode}
+     */
+    public static LapisCommandNode argument(String name, LapisArgumentParser<?> parser) {
+        return new LapisCommandNode(name, Collections.emptyList(), parser);
+    }
+
+    /**
+     * Add nodes that can follow this one
+     *
+     * @param nodes The child nodes
+     * @return This node, so that calls can be chained
+     */
+    public LapisCommandNode addChildren(LapisCommandNode... nodes) {
+        children.addAll(Arrays.asList(nodes));
+        return this;
+    }
+
+    /**
+     * Set the permission needed to use this node or any of its children
+     *
+     * @param permission The {@link LapisPermission} that must have a value greater than 0
+     * @return This node, so that calls can be chained
+     */
+    public LapisCommandNode setPermission(LapisPermission permission) {
+        this.permission = permission;
+        return this;
+    }
+
+    /**
+     * Set the code to run when this is the last node matched
+     *
+     * @param executor The executor for this node
+     * @return This node, so that calls can be chained
+     */
+    public LapisCommandNode setExecutor(LapisCommandExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Get the name of this node
+     *
+     * @return The literal word or argument name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Check if this node is a typed argument rather than a literal word
+     *
+     * @return true if this node was made with {@link #argument(String, LapisArgumentParser)}
+     */
+    public boolean isArgument() {
+        return parser != null;
+    }
+
+    LapisPermission getPermission() {
+        return permission;
+    }
+
+    LapisCommandExecutor getExecutor() {
+        return executor;
+    }
+
+    LapisArgumentParser<?> getParser() {
+        return parser;
+    }
+
+    LapisCommandNode getLiteralChild(String arg) {
+        return literalChildren.get(arg.toLowerCase(Locale.ROOT));
+    }
+
+    LapisCommandNode[] getArgumentChildren() {
+        return argumentChildren;
+    }
+
+    /**
+     * Build the lookup tables for this node and all of its children
+     */
+    void compile() {
+        Map<String, LapisCommandNode> literals = new HashMap<>();
+        List<LapisCommandNode> arguments = new ArrayList<>();
+        for (LapisCommandNode child : children) {
+            if (child.isArgument()) {
+                arguments.add(child);
+            } else {
+                literals.put(child.name.toLowerCase(Locale.ROOT), child);
+                for (String alias : child.aliases) {
+                    literals.putIfAbsent(alias.toLowerCase(Locale.ROOT), child);
+                }
+            }
+            child.compile();
+        }
+        literalChildren = literals;
+        argumentChildren = arguments.toArray(new LapisCommandNode[0]);
+        tabChildren = Collections.unmodifiableList(new ArrayList<>(children));
+    }
+
+    @Override
+    public List<String> getOptions(CommandSender sender) {
+        if (!isArgument())
+            return Collections.singletonList(name);
+        List<String> suggestions = parser.getSuggestions(sender);
+        //Show the argument as a free form item if there is nothing specific to suggest
+        if (suggestions == null || suggestions.isEmpty())
+            return Collections.singletonList("(" + name + ")");
+        return suggestions;
+    }
+
+    @Override
+    public List<LapisTabOption> getChildren(CommandSender sender) {
+        return tabChildren;
+    }
+
+    @Override
+    public LapisPermission getRequiredPermission() {
+        return permission;
+    }
+
+}
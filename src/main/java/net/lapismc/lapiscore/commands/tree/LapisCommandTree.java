@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands.tree;
+
+import net.lapismc.lapiscore.commands.LapisCoreCommand;
+import net.lapismc.lapiscore.commands.tabcomplete.LapisTabOption;
+import net.lapismc.lapiscore.permissions.LapisPermission;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A declarative set of subcommands and typed arguments for a {@link LapisCoreCommand}
+ * Register it with LapisCoreCommand#registerCommandTree, this compiles it and uses it for tab completion too
+ * <p>
+ * Each level is dispatched with a single map lookup for literal words, argument nodes are only tried if no literal matches
+ */
+public class LapisCommandTree {
+
+    private final LapisCommandNode root = LapisCommandNode.literal("");
+
+    /**
+     * Create a tree with the given top level nodes
+     *
+     * @param nodes The nodes that can follow the command name
+     */
+    public LapisCommandTree(LapisCommandNode... nodes) {
+        root.addChildren(nodes);
+    }
+
+    /**
+     * Add more top level nodes
+     *
+     * @param nodes The nodes that can follow the command name
+     * @return This tree, so that calls can be chained
+     */
+    public LapisCommandTree addNodes(LapisCommandNode... nodes) {
+        root.addChildren(nodes);
+        return this;
+    }
+
+    /**
+     * Set the code to run when the command is used without any arguments
+     *
+     * @param executor The executor to use
+     * @return This tree, so that calls can be chained
+     */
+    public LapisCommandTree setExecutor(LapisCommandExecutor executor) {
+        root.setExecutor(executor);
+        return this;
+    }
+
+    /**
+     * Build the lookup tables for every node, this must be called after the tree is finished and before dispatching
+     * This is done for you when the tree is registered to a command
+     */
+    public void compile() {
+        root.compile();
+    }
+
+    /**
+     * Get the top level nodes as tab options for use with a LapisCoreTabCompleter
+     *
+     * @return The top level nodes of this tree
+     */
+    public List<LapisTabOption> getTabOptions() {
+        return root.getChildren(null);
+    }
+
+    /**
+     * Find and run the executor that matches the given arguments
+     * Arguments left over after the deepest match are available from {@link LapisCommandContext#getRemainingArgs()}
+     *
+     * @param sender      The sender of the command
+     * @param args        The arguments provided with the command
+     * @param permissions Used to check if the sender has the permission of each node that is matched
+     * @return The outcome of the dispatch, see {@link Result}
+     */
+    public Result dispatch(CommandSender sender, String[] args, Predicate<LapisPermission> permissions) {
+        LapisCommandContext context = new LapisCommandContext(sender, args);
+        LapisCommandNode current = root;
+        int i = 0;
+        while (i < args.length) {
+            String arg = args[i];
+            LapisCommandNode next = current.getLiteralChild(arg);
+            if (next == null) {
+                //No literal matched, try each argument node in the order they were added
+                for (LapisCommandNode argument : current.getArgumentChildren()) {
+                    Object value = argument.getParser().parse(sender, arg);
+                    if (value != null) {
+                        context.put(argument.getName(), value);
+                        next = argument;
+                        break;
+                    }
+                }
+            }
+            if (next == null)
+                break;
+            if (next.getPermission() != null && !permissions.test(next.getPermission()))
+                return Result.NO_PERMISSION;
+            current = next;
+            i++;
+        }
+        if (current.getExecutor() == null)
+            return Result.NOT_FOUND;
+        context.setConsumed(i);
+        current.getExecutor().execute(context);
+        return Result.EXECUTED;
+    }
+
+    /**
+     * The possible outcomes of {@link #dispatch(CommandSender, String[], Predicate)}
+     */
+    public enum Result {
+        /**
+         * An executor was found and run
+         */
+        EXECUTED,
+        /**
+         * The sender is missing the permission of a node they tried to use
+         */
+        NO_PERMISSION,
+        /**
+         * The arguments didn't lead to a node with an executor
+         */
+        NOT_FOUND
+    }
+
+}
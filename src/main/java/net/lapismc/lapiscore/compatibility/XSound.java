@@ -17,6 +17,8 @@ package net.lapismc.lapiscore.compatibility;
 
 import com.google.common.base.Enums;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.bukkit.Instrument;
 import org.bukkit.Location;
 import org.bukkit.Note;
@@ -1530,6 +1532,16 @@ public enum XSound {
 
     public static final float DEFAULT_VOLUME = 1.0f, DEFAULT_PITCH = 1.0f;
 
+    /**
+     * Sound names and config strings are almost always the same few values, so the results of
+     * {@link #matchXSound(String)} and {@link #parse(String)} are cached by the raw string.
+     * Parsed records are never handed out directly since they are mutable, {@link #parse(String)} returns a copy.
+     *
+     * @see #clearCache()
+     */
+    private static final Cache<String, Optional<XSound>> MATCH_CACHE = CacheBuilder.newBuilder().maximumSize(1000).build();
+    private static final Cache<String, Record> PARSE_CACHE = CacheBuilder.newBuilder().maximumSize(1000).build();
+
     @Nullable
     private final Sound sound;
 
@@ -1601,9 +1613,31 @@ public enum XSound {
     public static Optional<XSound> matchXSound(@Nonnull String sound) {
         if (sound == null || sound.isEmpty())
             throw new IllegalArgumentException("Cannot match XSound of a null or empty sound name");
+        Optional<XSound> match = MATCH_CACHE.getIfPresent(sound);
+        if (match == null) {
+            match = matchUncached(sound);
+            MATCH_CACHE.put(sound, match);
+        }
+        return match;
+    }
+
+    /**
+     * The lookup done by {@link #matchXSound(String)} when the name isn't cached, package-private for benchmarks.
+     */
+    @Nonnull
+    static Optional<XSound> matchUncached(@Nonnull String sound) {
         return Optional.ofNullable(Data.NAMES.get(format(sound)));
     }
 
+    /**
+     * Clears the cached results of {@link #matchXSound(String)} and {@link #parse(String)}.
+     * This is called when the config is reloaded, since the strings that were cached are unlikely to be used again.
+     */
+    public static void clearCache() {
+        MATCH_CACHE.invalidateAll();
+        PARSE_CACHE.invalidateAll();
+    }
+
     /**
      * Parses the XSound with the given bukkit sound.
      *
@@ -1687,6 +1721,19 @@ public enum XSound {
     @Nullable
     public static Record parse(@Nullable String sound) {
         if (Strings.isNullOrEmpty(sound) || sound.equalsIgnoreCase("none")) return null;
+        Record record = PARSE_CACHE.getIfPresent(sound);
+        if (record == null) {
+            record = parseUncached(sound);
+            PARSE_CACHE.put(sound, record);
+        }
+        return record.clone();
+    }
+
+    /**
+     * The parsing done by {@link #parse(String)} when the string isn't cached, package-private for benchmarks.
+     */
+    @Nonnull
+    static Record parseUncached(@Nonnull String sound) {
         List<String> split = split(sound.replace(" ", ""), ',');
 
         String name = split.get(0);
@@ -1760,6 +1807,7 @@ public enum XSound {
      * @param ascendLevel the ascend level of notes. Can only be positive and not higher than 7
      * @param delay       the delay between each play.
      * @return the async task handling the operation.
+     * @see net.lapismc.lapiscore.utils.LapisSoundPlayer#playAscendingNote for a version that works on Folia
      * @since 2.0.0
      */
     @Nonnull
@@ -1877,6 +1925,7 @@ public enum XSound {
      *
      * @return the async task handling this operation.
      * @see #play(Location, float, float)
+     * @see net.lapismc.lapiscore.utils.LapisSoundPlayer#playRepeatedly for a version that works on Folia
      * @since 2.0.0
      */
     @Nonnull
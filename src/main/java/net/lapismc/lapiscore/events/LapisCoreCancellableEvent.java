@@ -16,8 +16,13 @@
 
 package net.lapismc.lapiscore.events;
 
+import net.lapismc.lapiscore.utils.LapisTaskHandler;
+import org.bukkit.Bukkit;
 import org.bukkit.event.Cancellable;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 /**
  * An utility class to make cancellable events
  */
@@ -26,6 +31,69 @@ public class LapisCoreCancellableEvent extends LapisCoreEvent implements Cancell
     private String reason;
     private boolean cancelled = false;
 
+    /**
+     * Create a synchronous event, it must be called from the main thread
+     */
+    public LapisCoreCancellableEvent() {
+        super();
+    }
+
+    /**
+     * Create an event that may be async
+     *
+     * @param isAsync true if the event will be called from an async task, async events can't be called from the main thread
+     */
+    public LapisCoreCancellableEvent(boolean isAsync) {
+        super(isAsync);
+    }
+
+    /**
+     * Call a cancellable event only if something is listening for it, the event is not constructed if nothing is
+     *
+     * @param type     The class of the event
+     * @param supplier Creates the event
+     * @param <T>      The type of the event
+     * @return true if a listener cancelled the event, false if it wasn't cancelled or there are no listeners
+     */
+    public static <T extends LapisCoreCancellableEvent> boolean fireCancellable(Class<T> type, Supplier<T> supplier) {
+        T event = fire(type, supplier);
+        return event != null && event.isCancelled();
+    }
+
+    /**
+     * Call a cancellable event from any thread, the event is called on a thread that suits it
+     * Async events are called on the current thread if it is already async, otherwise on an async task,
+     * synchronous events are called on the main thread, or the global region on Folia
+     *
+     * @param tasks    The task handler used to move to the right thread
+     * @param type     The class of the event
+     * @param supplier Creates the event, this is only called if something is listening
+     * @param <T>      The type of the event
+     * @return A future that completes with true if a listener cancelled the event
+     */
+    public static <T extends LapisCoreCancellableEvent> CompletableFuture<Boolean> fireAsync(LapisTaskHandler tasks,
+                                                                                           Class<T> type, Supplier<T> supplier) {
+        if (!hasListeners(type))
+            return CompletableFuture.completedFuture(false);
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        T event = supplier.get();
+        Runnable call = () -> {
+            try {
+                Bukkit.getPluginManager().callEvent(event);
+                future.complete(event.isCancelled());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+        if (!event.isAsynchronous())
+            tasks.runSynchronousTaskNow(call);
+        else if (Bukkit.isPrimaryThread())
+            tasks.runTask(call, true);
+        else
+            call.run();
+        return future;
+    }
+
     /**
      * Check if the event is cancelled
      *
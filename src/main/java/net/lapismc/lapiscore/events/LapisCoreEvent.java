@@ -16,19 +16,79 @@
 
 package net.lapismc.lapiscore.events;
 
+import org.bukkit.Bukkit;
 import org.bukkit.event.Event;
 import org.bukkit.event.HandlerList;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
 /**
  * An utility class for making notification events
+ * <p>
+ * Each subclass should declare its own handler list so that its listeners are only called for that event, e.g.
+ * <pre>{@code
+ * public static HandlerList getHandlerList() {
+ *     return getHandlerList(MyEvent.class);
+ * }
+ * }</pre>
+ * {@link #getHandlers()} finds this list for you, so subclasses don't need to override it
+ * Subclasses that don't declare a getHandlerList method share {@link #handlers} with every other such event
+ * <p>
+ * Events that are called from async tasks must be created with {@link #LapisCoreEvent(boolean)}
  */
 public class LapisCoreEvent extends Event {
 
     /**
      * This is a list required by the Spigot API
+     *
+     * @deprecated This list is shared by every subclass that doesn't declare its own getHandlerList,
+     * use {@link #getHandlerList(Class)} instead
      */
+    @Deprecated
     public static HandlerList handlers = new HandlerList();
 
+    private static final Map<Class<? extends LapisCoreEvent>, HandlerList> handlerLists = new ConcurrentHashMap<>();
+    //The handler list Bukkit registers listeners to for each event class, found once per class
+    private static final ClassValue<HandlerList> registeredHandlers = new ClassValue<>() {
+        @Override
+        protected HandlerList computeValue(Class<?> type) {
+            //Bukkit uses the getHandlerList of the closest class that declares one, so we do the same
+            for (Class<?> c = type; c != null && c != LapisCoreEvent.class; c = c.getSuperclass()) {
+                try {
+                    Method method = c.getDeclaredMethod("getHandlerList");
+                    if (!Modifier.isStatic(method.getModifiers()))
+                        continue;
+                    method.setAccessible(true);
+                    return (HandlerList) method.invoke(null);
+                } catch (NoSuchMethodException ignored) {
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Unable to get the handler list of " + c.getName(), e);
+                }
+            }
+            return handlers;
+        }
+    };
+
+    /**
+     * Create a synchronous event, it must be called from the main thread
+     */
+    public LapisCoreEvent() {
+        super();
+    }
+
+    /**
+     * Create an event that may be async
+     *
+     * @param isAsync true if the event will be called from an async task, async events can't be called from the main thread
+     */
+    public LapisCoreEvent(boolean isAsync) {
+        super(isAsync);
+    }
+
     /**
      * Another requirement of the Spigot API
      *
@@ -38,9 +98,46 @@ public class LapisCoreEvent extends Event {
         return handlers;
     }
 
+    /**
+     * Get the handler list for a subclass, use this to implement a static getHandlerList method in each event
+     *
+     * @param type The event class
+     * @return The handler list for the class, created the first time it is requested
+     */
+    protected static HandlerList getHandlerList(Class<? extends LapisCoreEvent> type) {
+        return handlerLists.computeIfAbsent(type, k -> new HandlerList());
+    }
+
+    /**
+     * Call an event only if something is listening for it, the event is not constructed if nothing is
+     * Events aren't reused between calls since listeners are free to keep a reference to them
+     *
+     * @param type     The class of the event
+     * @param supplier Creates the event
+     * @param <T>      The type of the event
+     * @return The event after it has been called, or null if there are no listeners
+     */
+    public static <T extends LapisCoreEvent> T fire(Class<T> type, Supplier<T> supplier) {
+        if (!hasListeners(type))
+            return null;
+        T event = supplier.get();
+        Bukkit.getPluginManager().callEvent(event);
+        return event;
+    }
+
+    /**
+     * Check if any listeners are registered for an event
+     *
+     * @param type The class of the event
+     * @return true if calling this event would reach a listener
+     */
+    public static boolean hasListeners(Class<? extends LapisCoreEvent> type) {
+        return registeredHandlers.get(type).getRegisteredListeners().length > 0;
+    }
+
     @Override
     public HandlerList getHandlers() {
-        return handlers;
+        return registeredHandlers.get(getClass());
     }
 
 }
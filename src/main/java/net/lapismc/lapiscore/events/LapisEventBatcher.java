@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.events;
+
+import net.lapismc.lapiscore.utils.LapisTaskHandler;
+import org.bukkit.Bukkit;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Collects events of one type from any thread and calls them together in a single scheduled task
+ * This is useful when many events are produced at once, e.g. one per item when loading a storage file,
+ * since only one task is scheduled for all of them
+ * <p>
+ * Events are only created if something is listening when the batch runs
+ *
+ * @param <T> The type of event to batch
+ */
+public class LapisEventBatcher<T extends LapisCoreEvent> {
+
+    private final LapisTaskHandler tasks;
+    private final Class<T> type;
+    private final boolean isAsync;
+    private final Queue<PendingEvent<T>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Create a batcher for an event type
+     *
+     * @param tasks   The task handler used to schedule each batch
+     * @param type    The class of the event
+     * @param isAsync true if the events are async and should be called from an async task,
+     *                false to call them on the main thread, or the global region on Folia
+     */
+    public LapisEventBatcher(LapisTaskHandler tasks, Class<T> type, boolean isAsync) {
+        this.tasks = tasks;
+        this.type = type;
+        this.isAsync = isAsync;
+    }
+
+    /**
+     * Add an event to the next batch, a batch is scheduled if one isn't already waiting
+     *
+     * @param supplier Creates the event, this is only called if something is listening when the batch runs
+     * @return A future that completes with the event once it has been called, or null if nothing was listening
+     */
+    public CompletableFuture<T> queue(Supplier<T> supplier) {
+        PendingEvent<T> pending = new PendingEvent<>(supplier);
+        queue.add(pending);
+        if (scheduled.compareAndSet(false, true))
+            tasks.runTask(this::callEvents, isAsync);
+        return pending.future;
+    }
+
+    /**
+     * Call every queued event now on the current thread, this runs automatically in the scheduled task
+     */
+    public void callEvents() {
+        //Allow a new batch to be scheduled before we start, so events queued while we are calling aren't missed
+        scheduled.set(false);
+        boolean hasListeners = LapisCoreEvent.hasListeners(type);
+        PendingEvent<T> pending;
+        while ((pending = queue.poll()) != null) {
+            if (!hasListeners) {
+                pending.future.complete(null);
+                continue;
+            }
+            try {
+                T event = pending.supplier.get();
+                Bukkit.getPluginManager().callEvent(event);
+                pending.future.complete(event);
+            } catch (Throwable t) {
+                pending.future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static class PendingEvent<T> {
+
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        PendingEvent(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+    }
+
+}
@@ -110,6 +110,9 @@ public class LapisCoreFileWatcher {
                             case "messages":
                                 core.config.generateConfigs();
                                 break;
+                            default:
+                                if (name.startsWith("messages_") && core.config != null)
+                                    core.config.reloadLocales();
                         }
                     }
                 } else if (kind == ENTRY_MODIFY) {
@@ -167,6 +170,12 @@ public class LapisCoreFileWatcher {
                 core.getLogger().info("Changes made to " + core.getName() + " messages.yml have been loaded");
                 break;
             default:
+                if (name.startsWith("messages_")) {
+                    if (core.config != null)
+                        core.config.reloadLocales();
+                    core.getLogger().info("Changes made to " + core.getName() + " " + f.getName() + " have been loaded");
+                    break;
+                }
                 checkOtherFile(f);
         }
         fileUpdate(f);
@@ -184,7 +193,7 @@ public class LapisCoreFileWatcher {
 
     /**
      * Override this method to deal with an unhandled file being edited
-     * This will only be fired for unknown files, it will not trigger when config or messages files are edited
+     * This will only be fired for unknown files, it will not trigger when config, messages or messages_ translation files are edited
      *
      * @param f The file that has been updated
      */
@@ -16,6 +16,11 @@
 
 package net.lapismc.lapiscore.utils;
 
+import com.destroystokyo.paper.profile.PlayerProfile;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.lapismc.lapiscore.compatibility.ServerImplementations;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.inventory.ItemFlag;
@@ -26,12 +31,21 @@ import org.bukkit.inventory.meta.SkullMeta;
 import org.bukkit.potion.PotionData;
 import org.bukkit.potion.PotionType;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class LapisItemBuilder {
 
+    //Frozen builders for static items like menu icons, see getTemplate
+    private static final Map<String, LapisItemBuilder> templates = new ConcurrentHashMap<>();
+    //Player profiles are only part of the API on Paper, Spigot uses the owning player directly
+    private static final boolean paper = new ServerImplementations().getImplementations().contains(ServerImplementations.imp.Paper);
+    //Skull profiles that have had their textures resolved, so that reopening a menu doesn't resolve them again
+    //Size based eviction drops the least recently used profiles first
+    private static final Cache<UUID, PlayerProfile> skullProfiles = CacheBuilder.newBuilder().maximumSize(500).build();
+
     Material mat;
     String name = "";
     int amount = 1;
@@ -40,6 +54,7 @@ public class LapisItemBuilder {
     int modelData = 0;
     List<String> lore = new ArrayList<>();
     List<ItemFlag> flags = new ArrayList<>();
+    ItemStack prototype;
 
     /**
      * Initialize a new item builder based on a material
@@ -67,6 +82,7 @@ public class LapisItemBuilder {
      * @return The new {@link LapisItemBuilder}
      */
     public LapisItemBuilder setName(String name) {
+        checkNotFrozen();
         this.name = name;
         return this;
     }
@@ -78,6 +94,7 @@ public class LapisItemBuilder {
      * @return The new {@link LapisItemBuilder}
      */
     public LapisItemBuilder setAmount(int amount) {
+        checkNotFrozen();
         this.amount = amount;
         return this;
     }
@@ -89,6 +106,7 @@ public class LapisItemBuilder {
      * @return The new {@link LapisItemBuilder}
      */
     public LapisItemBuilder addLore(String... lore) {
+        checkNotFrozen();
         this.lore.addAll(Arrays.asList(lore));
         return this;
     }
@@ -100,6 +118,7 @@ public class LapisItemBuilder {
      * @return the new {@link LapisItemBuilder}
      */
     public LapisItemBuilder setLore(String... lore) {
+        checkNotFrozen();
         this.lore.clear();
         this.lore.addAll(Arrays.asList(lore));
         return this;
@@ -112,6 +131,7 @@ public class LapisItemBuilder {
      * @return The new {@link LapisItemBuilder}
      */
     public LapisItemBuilder setWoolColor(WoolColor color) {
+        checkNotFrozen();
         mat = Material.getMaterial(color.name() + "_WOOL");
         return this;
     }
@@ -123,6 +143,7 @@ public class LapisItemBuilder {
      * @return the new {@link LapisItemBuilder}
      */
     public LapisItemBuilder setPotionType(PotionType potionType) {
+        checkNotFrozen();
         this.potionType = potionType;
         return this;
     }
@@ -134,6 +155,7 @@ public class LapisItemBuilder {
      * @return the new {@link LapisItemBuilder}
      */
     public LapisItemBuilder setCustomModelData(int modelData) {
+        checkNotFrozen();
         this.modelData = modelData;
         return this;
     }
@@ -145,24 +167,110 @@ public class LapisItemBuilder {
      * @return the new {@link LapisItemBuilder}
      */
     public LapisItemBuilder addFlags(ItemFlag... flags) {
+        checkNotFrozen();
         this.flags.addAll(List.of(flags));
         return this;
     }
 
+    /**
+     * Get an item from a shared template, the builder is only created and built the first time a key is used
+     * This is intended for static items such as menu icons that are built every time a menu opens
+     *
+     * @param key     A unique key for this item, e.g. "menu.back-button"
+     * @param builder Creates the builder for this item, only called if the template doesn't exist yet
+     * @return a copy of the templates ItemStack
+     */
+    public static ItemStack getTemplate(String key, Supplier<LapisItemBuilder> builder) {
+        return templates.computeIfAbsent(key, k -> builder.get().freeze()).build();
+    }
+
+    /**
+     * Remove all templates made with {@link #getTemplate(String, Supplier)}, e.g. when the messages they use are reloaded
+     */
+    public static void clearTemplates() {
+        templates.clear();
+    }
+
+    /**
+     * Build the item once and keep it as a prototype, {@link #build()} will then return a copy of the prototype
+     * Frozen builders can't be changed, the setters will throw an {@link IllegalStateException}
+     *
+     * @return the frozen {@link LapisItemBuilder}
+     */
+    public LapisItemBuilder freeze() {
+        if (prototype == null)
+            prototype = build();
+        return this;
+    }
+
+    /**
+     * Check if this builder has been frozen with {@link #freeze()}
+     *
+     * @return true if the builder is frozen
+     */
+    public boolean isFrozen() {
+        return prototype != null;
+    }
+
+    private void checkNotFrozen() {
+        if (prototype != null)
+            throw new IllegalStateException("This LapisItemBuilder has been frozen and can't be changed");
+    }
+
+    /**
+     * Build the item without blocking on the skull owners profile, intended for menus with many player heads
+     * If the owners profile hasn't been resolved yet, a head without a skin is returned as the placeholder
+     * and the profile is resolved on an async task, the future then completes with the finished head
+     * If the profile is already cached, this isn't a player head or the server isn't running Paper, the future is already complete
+     *
+     * @param tasks The task handler used to resolve the profile
+     * @return an {@link AsyncItem} holding the placeholder and the future for the finished item
+     */
+    public AsyncItem buildAsync(LapisTaskHandler tasks) {
+        //Without the Paper profile API there is nothing to resolve async, so the item is built straight away
+        if (!paper || prototype != null || owner == null || skullProfiles.getIfPresent(owner.getUniqueId()) != null) {
+            ItemStack item = build();
+            return new AsyncItem(item, CompletableFuture.completedFuture(item));
+        }
+        ItemStack placeholder = build(false);
+        CompletableFuture<ItemStack> future = new CompletableFuture<>();
+        tasks.runTask(() -> {
+            try {
+                PlayerProfile profile = Bukkit.createProfile(owner.getUniqueId(), owner.getName());
+                //This is the blocking lookup that we want to keep off the main thread
+                profile.complete(true);
+                if (profile.hasTextures())
+                    skullProfiles.put(owner.getUniqueId(), profile);
+            } catch (Exception e) {
+                //We still complete with a head below, it just might not have a skin
+                e.printStackTrace();
+            }
+            //Items should be built and used on the main thread
+            tasks.runSynchronousTaskNow(() -> future.complete(build()));
+        }, true);
+        return new AsyncItem(placeholder, future);
+    }
+
     /**
      * Build the item based on the set variables in the builder
      *
      * @return the ItemStack requested
      */
     public ItemStack build() {
+        if (prototype != null)
+            return prototype.clone();
+        return build(true);
+    }
+
+    private ItemStack build(boolean applyOwner) {
         ItemStack i = new ItemStack(mat);
         ItemMeta meta = i.getItemMeta();
         if (meta != null) {
             if (name != null && !name.isEmpty()) {
                 meta.setDisplayName(name);
             }
-            if (owner != null && meta instanceof SkullMeta) {
-                ((SkullMeta) meta).setOwningPlayer(owner);
+            if (applyOwner && owner != null && meta instanceof SkullMeta) {
+                applyOwner((SkullMeta) meta);
             }
             if (potionType != null && meta instanceof PotionMeta) {
                 ((PotionMeta) meta).setBasePotionData(new PotionData(potionType));
@@ -183,6 +291,58 @@ public class LapisItemBuilder {
         return i;
     }
 
+    /**
+     * Apply the owner to a skull, using a resolved profile from the cache if there is one on Paper
+     */
+    private void applyOwner(SkullMeta meta) {
+        if (!paper) {
+            meta.setOwningPlayer(owner);
+            return;
+        }
+        PlayerProfile cached = skullProfiles.getIfPresent(owner.getUniqueId());
+        if (cached != null) {
+            meta.setPlayerProfile(cached);
+            return;
+        }
+        meta.setOwningPlayer(owner);
+        PlayerProfile profile = meta.getPlayerProfile();
+        //Only cache profiles with textures, otherwise we would keep showing a default head
+        if (profile != null && profile.hasTextures())
+            skullProfiles.put(owner.getUniqueId(), profile);
+    }
+
+    /**
+     * The result of {@link #buildAsync(LapisTaskHandler)}
+     */
+    public static class AsyncItem {
+
+        private final ItemStack placeholder;
+        private final CompletableFuture<ItemStack> item;
+
+        AsyncItem(ItemStack placeholder, CompletableFuture<ItemStack> item) {
+            this.placeholder = placeholder;
+            this.item = item;
+        }
+
+        /**
+         * Get the item to display until the finished item is ready
+         *
+         * @return the placeholder ItemStack
+         */
+        public ItemStack getPlaceholder() {
+            return placeholder;
+        }
+
+        /**
+         * Get the finished item, this completes on the main thread, or the global region on Folia
+         *
+         * @return a future that completes with the finished ItemStack
+         */
+        public CompletableFuture<ItemStack> getItem() {
+            return item;
+        }
+    }
+
     public enum WoolColor {
         WHITE, ORANGE, MAGENTA, LIGHT_BLUE, YELLOW, LIME, PINK, GRAY, LIGHT_GRAY, CYAN, PURPLE, BLUE, BROWN, GREEN, RED, BLACK
     }
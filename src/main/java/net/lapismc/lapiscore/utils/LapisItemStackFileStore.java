@@ -0,0 +1,344 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * A file backed store of inventories keyed by UUID, e.g. one backpack per player
+ * Unlike {@link LapisItemStackStorage} with yaml, loading or saving one inventory doesn't read or write the whole file
+ * <p>
+ * Inventories are appended to a memory mapped file in the binary format from {@link LapisItemStackStorage#encodeItems(ItemStack[], LapisItemStackStorage.Compression)}
+ * An index of where each inventory is stored is built when the file is opened, each record is checksummed
+ * so that a record that was only partly written when the server crashed is ignored
+ * Saving an inventory leaves its old record in the file, use {@link #compact()} or
+ * {@link #scheduleCompaction(LapisTaskHandler, long)} to reclaim the space
+ * <p>
+ * The file is limited to 2GB, all methods are synchronized so the store can be used from async tasks
+ */
+public class LapisItemStackFileStore implements Closeable {
+
+    //"LIS1" in ASCII, marks the start of every record
+    private static final int RECORD_MAGIC = 0x4C495331;
+    //Magic, UUID, payload length and CRC32
+    private static final int HEADER_SIZE = 4 + 16 + 4 + 4;
+    //A payload length of -1 marks a removed inventory
+    private static final int REMOVED = -1;
+    private static final int INITIAL_CAPACITY = 1024 * 1024;
+
+    private final File file;
+    private final LapisItemStackStorage storage = new LapisItemStackStorage();
+    private final LapisItemStackStorage.Compression compression;
+    private final Map<UUID, Integer> index = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private long liveBytes;
+
+    /**
+     * Open a store without compression, the file is created if it doesn't exist
+     *
+     * @param file The file to store inventories in
+     * @throws IOException if the file can't be opened
+     */
+    public LapisItemStackFileStore(File file) throws IOException {
+        this(file, LapisItemStackStorage.Compression.NONE);
+    }
+
+    /**
+     * Open a store, the file is created if it doesn't exist
+     *
+     * @param file        The file to store inventories in
+     * @param compression The compression to use for newly saved inventories
+     * @throws IOException if the file can't be opened
+     */
+    public LapisItemStackFileStore(File file, LapisItemStackStorage.Compression compression) throws IOException {
+        this.file = file;
+        this.compression = compression;
+        open();
+    }
+
+    /**
+     * Save an inventory, replacing any inventory already stored for this UUID
+     *
+     * @param uuid  The UUID to store the inventory under
+     * @param items The items to store
+     * @throws IOException if the file can't be written to
+     */
+    public void saveItems(UUID uuid, ItemStack[] items) throws IOException {
+        saveEncoded(uuid, storage.encodeItems(items, compression));
+    }
+
+    /**
+     * Save an inventory that has already been encoded with {@link LapisItemStackStorage#encodeItems(ItemStack[], LapisItemStackStorage.Compression)}
+     * This allows the items to be encoded on the thread that owns them, and written from another
+     *
+     * @param uuid The UUID to store the inventory under
+     * @param data The encoded inventory
+     * @throws IOException if the file can't be written to
+     */
+    public synchronized void saveEncoded(UUID uuid, byte[] data) throws IOException {
+        int offset = append(uuid, data, data.length);
+        Integer previous = index.put(uuid, offset);
+        if (previous != null)
+            liveBytes -= recordSize(previous);
+        liveBytes += HEADER_SIZE + data.length;
+    }
+
+    /**
+     * Load an inventory
+     *
+     * @param uuid The UUID the inventory was stored under
+     * @return The stored items, or null if nothing is stored for this UUID
+     * @throws IOException if the stored inventory can't be decoded
+     */
+    public ItemStack[] loadItems(UUID uuid) throws IOException {
+        byte[] data = loadEncoded(uuid);
+        return data == null ? null : storage.decodeItems(data);
+    }
+
+    /**
+     * Load an inventory without decoding it
+     *
+     * @param uuid The UUID the inventory was stored under
+     * @return The encoded inventory, or null if nothing is stored for this UUID
+     */
+    public synchronized byte[] loadEncoded(UUID uuid) {
+        Integer offset = index.get(uuid);
+        if (offset == null)
+            return null;
+        byte[] data = new byte[buffer.getInt(offset + 20)];
+        buffer.get(offset + HEADER_SIZE, data);
+        return data;
+    }
+
+    /**
+     * Check if an inventory is stored for a UUID
+     *
+     * @param uuid The UUID to check
+     * @return true if there is an inventory stored
+     */
+    public synchronized boolean contains(UUID uuid) {
+        return index.containsKey(uuid);
+    }
+
+    /**
+     * Remove the inventory stored for a UUID
+     *
+     * @param uuid The UUID to remove
+     * @throws IOException if the file can't be written to
+     */
+    public synchronized void removeItems(UUID uuid) throws IOException {
+        Integer offset = index.remove(uuid);
+        if (offset == null)
+            return;
+        liveBytes -= recordSize(offset);
+        append(uuid, new byte[0], REMOVED);
+    }
+
+    /**
+     * Check if enough space is used by old records that a compaction is worthwhile
+     *
+     * @return true if more than half of the file, and at least 1MB, is old records
+     */
+    public synchronized boolean shouldCompact() {
+        long wasted = writePosition - liveBytes;
+        return wasted > liveBytes && wasted > INITIAL_CAPACITY;
+    }
+
+    /**
+     * Rewrite the file with only the current inventories, the new file replaces the old one once it is complete
+     *
+     * @throws IOException if the new file can't be written
+     */
+    public synchronized void compact() throws IOException {
+        Path temp = new File(file.getParentFile(), file.getName() + ".compact").toPath();
+        //The new file is written through its channel instead of being mapped, so there is only one mapping to release
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            for (int offset : index.values()) {
+                ByteBuffer record = buffer.slice(offset, recordSize(offset));
+                while (record.hasRemaining())
+                    out.write(record);
+            }
+            out.force(true);
+        }
+        //Windows won't replace a file that is still open or mapped
+        buffer.force();
+        release();
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            //If the move failed this opens the old file again, so the store can still be used
+            open();
+        }
+    }
+
+    /**
+     * Run {@link #compact()} on an async task every period, if {@link #shouldCompact()} is true
+     *
+     * @param tasks       The task handler to schedule with
+     * @param periodTicks How often to check, in game ticks
+     * @return The task so that it can be canceled, it is also added to the task handler
+     */
+    public LapisTaskHandler.LapisTask scheduleCompaction(LapisTaskHandler tasks, long periodTicks) {
+        LapisTaskHandler.LapisTask task = tasks.runTaskTimer(() -> {
+            try {
+                if (shouldCompact())
+                    compact();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, periodTicks, periodTicks, true);
+        tasks.addTask(task);
+        return task;
+    }
+
+    /**
+     * Force any changes to be written to disk, the OS will do this eventually but calling this limits what a power loss can lose
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Flush and close the file, the store can't be used after this
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        release();
+    }
+
+    /**
+     * Open the file, map it into memory and build the index by reading every record
+     */
+    private void open() throws IOException {
+        index.clear();
+        liveBytes = 0;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException(file.getName() + " is larger than 2GB");
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity() && buffer.getInt(position) == RECORD_MAGIC) {
+            int length = buffer.getInt(position + 20);
+            int payloadLength = length == REMOVED ? 0 : length;
+            //A record that runs off the end of the file or fails its checksum was not finished before a crash
+            if (payloadLength < 0 || position + HEADER_SIZE + payloadLength > buffer.capacity()
+                    || buffer.getInt(position + 24) != checksum(position, payloadLength))
+                break;
+            UUID uuid = new UUID(buffer.getLong(position + 4), buffer.getLong(position + 12));
+            Integer previous = length == REMOVED ? index.remove(uuid) : index.put(uuid, position);
+            if (previous != null)
+                liveBytes -= recordSize(previous);
+            if (length != REMOVED)
+                liveBytes += HEADER_SIZE + payloadLength;
+            position += HEADER_SIZE + payloadLength;
+        }
+        writePosition = position;
+        //Clear anything after the last good record so a broken record can't be mistaken for a real one later
+        for (int i = position; i < size; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * Write a record to the end of the file, growing the mapping if needed
+     *
+     * @return The offset the record was written at
+     */
+    private int append(UUID uuid, byte[] data, int length) throws IOException {
+        long needed = (long) writePosition + HEADER_SIZE + data.length;
+        if (needed > Integer.MAX_VALUE)
+            throw new IOException(file.getName() + " would be larger than 2GB, it needs to be compacted");
+        if (needed > buffer.capacity()) {
+            long capacity = Math.min(Integer.MAX_VALUE, Math.max(needed, (long) buffer.capacity() * 2));
+            MappedByteBuffer old = buffer;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            unmap(old);
+        }
+        int offset = writePosition;
+        buffer.putLong(offset + 4, uuid.getMostSignificantBits());
+        buffer.putLong(offset + 12, uuid.getLeastSignificantBits());
+        buffer.putInt(offset + 20, length);
+        buffer.put(offset + HEADER_SIZE, data);
+        buffer.putInt(offset + 24, checksum(offset, data.length));
+        //The magic is written last so that the record is only recognised once everything else is in place
+        buffer.putInt(offset, RECORD_MAGIC);
+        writePosition += HEADER_SIZE + data.length;
+        return offset;
+    }
+
+    /**
+     * Calculate the CRC32 of a records UUID, length and payload
+     */
+    private int checksum(int offset, int payloadLength) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + 4, 20));
+        crc.update(buffer.slice(offset + HEADER_SIZE, payloadLength));
+        return (int) crc.getValue();
+    }
+
+    private int recordSize(int offset) {
+        return HEADER_SIZE + buffer.getInt(offset + 20);
+    }
+
+    /**
+     * Close the channel and unmap the file, the buffer is cleared so that using it afterwards fails instead of crashing
+     */
+    private void release() throws IOException {
+        MappedByteBuffer mapping = buffer;
+        buffer = null;
+        channel.close();
+        unmap(mapping);
+    }
+
+    /**
+     * Unmap a buffer now instead of whenever it is garbage collected, the buffer must not be used after this
+     */
+    private static void unmap(MappedByteBuffer mapping) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), mapping);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            //Without Unsafe the mapping is released when it is garbage collected instead
+        }
+    }
+
+}
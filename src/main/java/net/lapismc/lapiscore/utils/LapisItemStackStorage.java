@@ -19,15 +19,32 @@ package net.lapismc.lapiscore.utils;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * A class for storing ItemStacks in yaml configs
  * This is designed to be used with whole inventories, e.g. a whole chest or a players whole inventory
+ * <p>
+ * Items can be stored as a yaml list, or in a compact binary format using {@link #saveItemsBinary(YamlConfiguration, String, ItemStack[], Compression)}
+ * {@link #loadItems(YamlConfiguration, String)} will load either format
  */
 public class LapisItemStackStorage {
 
+    private static final byte FORMAT_VERSION = 1;
+    //Far more slots than any inventory has, anything larger is corrupt data
+    private static final int MAX_SLOTS = 1 << 16;
+    //The latest write queued for each file, so that writes to the same file run in the order they were made
+    private static final Map<Path, CompletableFuture<Void>> writes = new ConcurrentHashMap<>();
+
     /**
      * Save items into a yaml config at the given path
      * The config must still be saved before the items are stored
@@ -48,6 +65,15 @@ public class LapisItemStackStorage {
      * @return an array of ItemStacks that were stored
      */
     public ItemStack[] loadItems(YamlConfiguration yaml, String path) {
+        //Binary data is stored as a Base64 string, the yaml list format is used otherwise
+        if (yaml.isString(path)) {
+            try {
+                return decodeItems(Base64.getDecoder().decode(yaml.getString(path)));
+            } catch (IOException | IllegalArgumentException e) {
+                e.printStackTrace();
+                return new ItemStack[0];
+            }
+        }
         //Create a list to store the ItemStacks into
         List<ItemStack> items = new ArrayList<>();
         //Get the list from the config
@@ -68,4 +94,314 @@ public class LapisItemStackStorage {
         return items.toArray(new ItemStack[0]);
     }
 
+    /**
+     * Save items into a yaml config as a yaml list, and then write the config to disk on an async task
+     * The items and config are captured on the calling thread, so this should be called from the thread that owns the items
+     *
+     * @param tasks The task handler used to run the write
+     * @param yaml  The yaml config to save the items into
+     * @param path  The path to save at
+     * @param items The items to save
+     * @param file  The file the yaml config should be written to
+     * @return A future that completes, on the async thread, once the file has been written
+     */
+    public CompletableFuture<Void> saveItemsAsync(LapisTaskHandler tasks, YamlConfiguration yaml, String path,
+                                                  ItemStack[] items, File file) {
+        saveItems(yaml, path, items);
+        return writeAsync(tasks, yaml.saveToString(), file);
+    }
+
+    /**
+     * Save items into a yaml config in the binary format, and then write the config to disk on an async task
+     * The items and config are captured on the calling thread, so this should be called from the thread that owns the items
+     *
+     * @param tasks       The task handler used to run the write
+     * @param yaml        The yaml config to save the items into
+     * @param path        The path to save at
+     * @param items       The items to save
+     * @param compression The compression to apply to the items
+     * @param file        The file the yaml config should be written to
+     * @return A future that completes, on the async thread, once the file has been written
+     */
+    public CompletableFuture<Void> saveItemsAsync(LapisTaskHandler tasks, YamlConfiguration yaml, String path,
+                                                  ItemStack[] items, Compression compression, File file) {
+        saveItemsBinary(yaml, path, items, compression);
+        return writeAsync(tasks, yaml.saveToString(), file);
+    }
+
+    private CompletableFuture<Void> writeAsync(LapisTaskHandler tasks, String contents, File file) {
+        Path path = file.toPath().toAbsolutePath();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> previous = writes.put(path, future);
+        //Wait for the previous write to this file, a failed write must not stop the writes after it
+        (previous == null ? CompletableFuture.completedFuture(null) : previous).whenComplete((result, t) -> tasks.runTask(() -> {
+            try {
+                //Write everything to a temp file first, so a crash can't leave the real file half written
+                Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+                Files.writeString(temp, contents, StandardCharsets.UTF_8);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                future.complete(null);
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            } finally {
+                //Only forget the chain if no other write has been queued behind this one
+                writes.remove(path, future);
+            }
+        }, true));
+        return future;
+    }
+
+    /**
+     * Load items from a yaml file on an async task, either format is supported
+     *
+     * @param tasks The task handler used to run the load
+     * @param file  The yaml file to load from
+     * @param path  The path that the items were stored at
+     * @return A future that completes, on the async thread, with the loaded items
+     */
+    public CompletableFuture<ItemStack[]> loadItemsAsync(LapisTaskHandler tasks, File file, String path) {
+        CompletableFuture<ItemStack[]> future = new CompletableFuture<>();
+        tasks.runTask(() -> {
+            try {
+                future.complete(loadItems(YamlConfiguration.loadConfiguration(file), path));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }, true);
+        return future;
+    }
+
+    /**
+     * Save items into a {@link LapisItemStackFileStore} on an async task
+     * The items are encoded on the calling thread, so this should be called from the thread that owns the items
+     *
+     * @param tasks The task handler used to run the write
+     * @param store The store to save into
+     * @param uuid  The UUID to store the items under
+     * @param items The items to save
+     * @return A future that completes, on the async thread, once the items have been written
+     */
+    public CompletableFuture<Void> saveItemsAsync(LapisTaskHandler tasks, LapisItemStackFileStore store, UUID uuid,
+                                                  ItemStack[] items) {
+        byte[] data = encodeItems(items, Compression.NONE);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        tasks.runTask(() -> {
+            try {
+                store.saveEncoded(uuid, data);
+                future.complete(null);
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        }, true);
+        return future;
+    }
+
+    /**
+     * Load items from a {@link LapisItemStackFileStore} on an async task
+     *
+     * @param tasks The task handler used to run the load
+     * @param store The store to load from
+     * @param uuid  The UUID the items were stored under
+     * @return A future that completes, on the async thread, with the items or null if nothing was stored
+     */
+    public CompletableFuture<ItemStack[]> loadItemsAsync(LapisTaskHandler tasks, LapisItemStackFileStore store, UUID uuid) {
+        CompletableFuture<ItemStack[]> future = new CompletableFuture<>();
+        tasks.runTask(() -> {
+            try {
+                future.complete(store.loadItems(uuid));
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        }, true);
+        return future;
+    }
+
+    /**
+     * Save items into a yaml config at the given path using the binary format
+     * This is much smaller and faster than {@link #saveItems(YamlConfiguration, String, ItemStack[])} for large inventories,
+     * but the stored items can't be edited by hand
+     * The config must still be saved before the items are stored
+     *
+     * @param yaml        The yaml config to save the items into
+     * @param path        The path to save at
+     * @param items       The items to save
+     * @param compression The compression to apply to the items
+     */
+    public void saveItemsBinary(YamlConfiguration yaml, String path, ItemStack[] items, Compression compression) {
+        yaml.set(path, Base64.getEncoder().encodeToString(encodeItems(items, compression)));
+    }
+
+    /**
+     * Encode items into the binary format, empty slots take no space
+     *
+     * @param items       The items to encode, nulls and air are treated as empty slots
+     * @param compression The compression to apply
+     * @return The encoded items, these can be read with {@link #decodeItems(byte[])}
+     */
+    public byte[] encodeItems(ItemStack[] items, Compression compression) {
+        byte[][] slots = new byte[items.length][];
+        for (int i = 0; i < items.length; i++) {
+            slots[i] = serializeItem(items[i]);
+        }
+        return encodeSlots(slots, compression);
+    }
+
+    /**
+     * Decode items that were encoded with {@link #encodeItems(ItemStack[], Compression)}
+     *
+     * @param data The encoded items
+     * @return The items, with nulls in empty slots
+     * @throws IOException if the data is not valid
+     */
+    public ItemStack[] decodeItems(byte[] data) throws IOException {
+        byte[][] slots = decodeSlots(data);
+        ItemStack[] items = new ItemStack[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == null)
+                continue;
+            try {
+                items[i] = ItemStack.deserializeBytes(slots[i]);
+            } catch (RuntimeException e) {
+                //The server throws its own exceptions for item data it can't read, report them like any other bad data
+                throw new IOException("The item in slot " + i + " could not be deserialized", e);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Decode the serialized items written by {@link #encodeSlots(byte[][], Compression)}
+     * The sizes in the data are checked before anything is allocated, so a corrupt file can't run the server out of memory
+     *
+     * @param data The encoded items
+     * @return The serialized items indexed by slot, with nulls in empty slots
+     * @throws IOException if the data is not valid
+     */
+    byte[][] decodeSlots(byte[] data) throws IOException {
+        if (data.length < 2 || data[0] != FORMAT_VERSION)
+            throw new IOException("Unknown item storage format");
+        Compression compression = Compression.fromId(data[1]);
+        InputStream body = new ByteArrayInputStream(data, 2, data.length - 2);
+        if (compression == Compression.DEFLATE)
+            body = new InflaterInputStream(body);
+        try (DataInputStream in = new DataInputStream(body)) {
+            int size = readVarInt(in);
+            int count = readVarInt(in);
+            if (size < 0 || size > MAX_SLOTS || count < 0 || count > size)
+                throw new IOException("Invalid inventory size " + size + " with " + count + " items");
+            //Every item takes at least two bytes, we can only check this before inflating when the data isn't compressed
+            if (compression == Compression.NONE && count > in.available() / 2)
+                throw new IOException(count + " items don't fit in " + in.available() + " bytes");
+            byte[][] slots = new byte[size][];
+            for (int i = 0; i < count; i++) {
+                int slot = readVarInt(in);
+                int length = readVarInt(in);
+                if (slot < 0 || slot >= size || length < 0)
+                    throw new IOException("Invalid item in slot " + slot + " of an inventory of size " + size);
+                //readNBytes only grows its buffer as data arrives, so a corrupt length fails at the end of the data
+                byte[] bytes = in.readNBytes(length);
+                if (bytes.length != length)
+                    throw new IOException("Item in slot " + slot + " is missing " + (length - bytes.length) + " bytes");
+                slots[slot] = bytes;
+            }
+            return slots;
+        }
+    }
+
+    /**
+     * Serialize a single item for use with {@link #encodeSlots(byte[][], Compression)}
+     *
+     * @param item The item to serialize
+     * @return The serialized item, or null if the item is null or empty
+     */
+    byte[] serializeItem(ItemStack item) {
+        if (item == null || item.isEmpty())
+            return null;
+        return item.serializeAsBytes();
+    }
+
+    /**
+     * Encode already serialized items, only slots that are not null are written
+     *
+     * @param slots       The serialized items from {@link #serializeItem(ItemStack)}, indexed by slot
+     * @param compression The compression to apply
+     * @return The encoded items
+     */
+    byte[] encodeSlots(byte[][] slots, Compression compression) {
+        int count = 0;
+        int bodySize = 10;
+        for (byte[] slot : slots) {
+            if (slot != null) {
+                count++;
+                bodySize += slot.length + 10;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(compression == Compression.NONE ? bodySize + 2 : 512);
+        bytes.write(FORMAT_VERSION);
+        bytes.write(compression.id);
+        OutputStream body = compression == Compression.DEFLATE ? new DeflaterOutputStream(bytes) : bytes;
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            writeVarInt(out, slots.length);
+            writeVarInt(out, count);
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] == null)
+                    continue;
+                writeVarInt(out, i);
+                writeVarInt(out, slots[i].length);
+                out.write(slots[i]);
+            }
+        } catch (IOException e) {
+            //Writing to a byte array can't fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("VarInt is too long");
+    }
+
+    /**
+     * The compression that can be applied to the binary item format
+     */
+    public enum Compression {
+        /**
+         * No compression, the fastest option
+         */
+        NONE(0),
+        /**
+         * Deflate compression, smaller but slower to save and load
+         */
+        DEFLATE(1);
+
+        private final byte id;
+
+        Compression(int id) {
+            this.id = (byte) id;
+        }
+
+        static Compression fromId(byte id) throws IOException {
+            for (Compression compression : values()) {
+                if (compression.id == id)
+                    return compression;
+            }
+            throw new IOException("Unknown compression " + id);
+        }
+    }
+
 }
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps track of which slots of each inventory have changed and saves only the changed inventories to a {@link LapisItemStackFileStore}
+ * Changes are collected and written together a short time after the first change, rather than on every change
+ * <p>
+ * Items are copied when they are given to the tracker, and encoded on the task handlers synchronous thread before being written async
+ * Each slot is only re-encoded when it changes, unchanged slots reuse their previous encoding
+ */
+public class LapisItemStackTracker {
+
+    private final LapisTaskHandler tasks;
+    private final LapisItemStackFileStore store;
+    private final LapisItemStackStorage storage = new LapisItemStackStorage();
+    private final long flushDelayTicks;
+    private final Map<UUID, TrackedInventory> inventories = new HashMap<>();
+    private final Executor asyncExecutor;
+    //The newest encoded data of each inventory that has been queued but not written yet
+    private final Map<UUID, byte[]> pending = new ConcurrentHashMap<>();
+    //Held while a write is running so that flushNow can wait for it without waiting on the executor
+    private final Object writeLock = new Object();
+    //Writes are chained so that an older save can never be written after a newer one
+    private CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+    private boolean closed;
+    private LapisTaskHandler.LapisTask flushTask;
+
+    /**
+     * Create a tracker that writes changed inventories 5 seconds after they change
+     *
+     * @param tasks The task handler used to schedule flushes and writes
+     * @param store The store that inventories are saved to
+     */
+    public LapisItemStackTracker(LapisTaskHandler tasks, LapisItemStackFileStore store) {
+        this(tasks, store, 100);
+    }
+
+    /**
+     * Create a tracker, any remaining changes are written when the plugin is disabled
+     *
+     * @param tasks           The task handler used to schedule flushes and writes
+     * @param store           The store that inventories are saved to
+     * @param flushDelayTicks How long after the first change the changes are written, in game ticks
+     */
+    public LapisItemStackTracker(LapisTaskHandler tasks, LapisItemStackFileStore store, long flushDelayTicks) {
+        this.tasks = tasks;
+        this.store = store;
+        this.flushDelayTicks = flushDelayTicks;
+        asyncExecutor = runnable -> tasks.runTask(runnable, true);
+        tasks.addShutdownTask(this::flushNow);
+    }
+
+    /**
+     * Start tracking an inventory, these items are treated as already saved
+     * Use {@link #load(UUID)} to start tracking an inventory from the store
+     *
+     * @param uuid  The UUID the inventory is stored under
+     * @param items The current items in the inventory
+     */
+    public synchronized void track(UUID uuid, ItemStack[] items) {
+        TrackedInventory inventory = new TrackedInventory(items.length);
+        for (int i = 0; i < items.length; i++) {
+            inventory.items[i] = copy(items[i]);
+            inventory.encoded[i] = storage.serializeItem(inventory.items[i]);
+        }
+        inventories.put(uuid, inventory);
+    }
+
+    /**
+     * Load an inventory from the store and start tracking it
+     *
+     * @param uuid The UUID the inventory is stored under
+     * @return The items that were stored, or an empty array if there were none
+     * @throws IOException if the stored inventory can't be read
+     */
+    public ItemStack[] load(UUID uuid) throws IOException {
+        ItemStack[] items = store.loadItems(uuid);
+        if (items == null)
+            items = new ItemStack[0];
+        track(uuid, items);
+        return getItems(uuid);
+    }
+
+    /**
+     * Change a single slot of a tracked inventory
+     *
+     * @param uuid The UUID of the inventory
+     * @param slot The slot to change
+     * @param item The new item, null for an empty slot
+     */
+    public synchronized void setItem(UUID uuid, int slot, ItemStack item) {
+        TrackedInventory inventory = getInventory(uuid);
+        inventory.items[slot] = copy(item);
+        inventory.dirty.set(slot);
+        scheduleFlush();
+    }
+
+    /**
+     * Replace the contents of a tracked inventory, only slots that are different from the tracked items are marked as changed
+     * Inventories that aren't being tracked yet are tracked and fully saved
+     *
+     * @param uuid  The UUID of the inventory
+     * @param items The new contents of the inventory
+     */
+    public synchronized void setItems(UUID uuid, ItemStack[] items) {
+        TrackedInventory inventory = inventories.get(uuid);
+        if (inventory == null || inventory.items.length != items.length) {
+            inventory = new TrackedInventory(items.length);
+            inventories.put(uuid, inventory);
+            inventory.dirty.set(0, items.length);
+            //Mark the inventory changed even if it is empty so that the new size is saved
+            inventory.resized = true;
+        }
+        for (int i = 0; i < items.length; i++) {
+            if (!Objects.equals(inventory.items[i], items[i])) {
+                inventory.items[i] = copy(items[i]);
+                inventory.dirty.set(i);
+            }
+        }
+        if (inventory.isDirty())
+            scheduleFlush();
+    }
+
+    /**
+     * Get a copy of the tracked items of an inventory
+     *
+     * @param uuid The UUID of the inventory
+     * @return A copy of the items, or null if the inventory isn't tracked
+     */
+    public synchronized ItemStack[] getItems(UUID uuid) {
+        TrackedInventory inventory = inventories.get(uuid);
+        if (inventory == null)
+            return null;
+        ItemStack[] items = new ItemStack[inventory.items.length];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = copy(inventory.items[i]);
+        }
+        return items;
+    }
+
+    /**
+     * Stop tracking an inventory, e.g. when a player leaves, any changes are saved with the next flush
+     *
+     * @param uuid The UUID of the inventory
+     * @return A future that completes once any changes have been written
+     */
+    public synchronized CompletableFuture<Void> untrack(UUID uuid) {
+        TrackedInventory inventory = inventories.remove(uuid);
+        if (inventory == null || !inventory.isDirty())
+            return writes;
+        return write(uuid, encode(inventory));
+    }
+
+    /**
+     * Encode every changed inventory and write them on an async task
+     * This is called automatically a short time after a change, it can be called early e.g. before a backup
+     *
+     * @return A future that completes once all the changes have been written
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        for (Map.Entry<UUID, TrackedInventory> entry : inventories.entrySet()) {
+            if (entry.getValue().isDirty())
+                write(entry.getKey(), encode(entry.getValue()));
+        }
+        return writes;
+    }
+
+    /**
+     * Write every changed inventory on the calling thread, used when the plugin is disabled and async tasks can't be started
+     * Queued writes that haven't run yet are written here instead
+     */
+    public synchronized void flushNow() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        //Wait for a write that is already running, then stop any queued writes from running after these
+        synchronized (writeLock) {
+            closed = true;
+        }
+        for (Map.Entry<UUID, TrackedInventory> entry : inventories.entrySet()) {
+            if (entry.getValue().isDirty())
+                pending.put(entry.getKey(), encode(entry.getValue()));
+        }
+        for (Map.Entry<UUID, byte[]> entry : pending.entrySet()) {
+            try {
+                store.saveEncoded(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        pending.clear();
+        store.flush();
+    }
+
+    private void scheduleFlush() {
+        if (flushTask == null)
+            flushTask = tasks.runTaskLater(this::flush, flushDelayTicks, false);
+    }
+
+    /**
+     * Re-encode the changed slots of an inventory and mark it as clean
+     */
+    private byte[] encode(TrackedInventory inventory) {
+        for (int slot = inventory.dirty.nextSetBit(0); slot >= 0; slot = inventory.dirty.nextSetBit(slot + 1)) {
+            inventory.encoded[slot] = storage.serializeItem(inventory.items[slot]);
+        }
+        inventory.dirty.clear();
+        inventory.resized = false;
+        return storage.encodeSlots(inventory.encoded, LapisItemStackStorage.Compression.NONE);
+    }
+
+    private CompletableFuture<Void> write(UUID uuid, byte[] data) {
+        pending.put(uuid, data);
+        //A write that couldn't be scheduled must not stop the writes after it, its data stays pending for flushNow
+        writes = writes.exceptionally(t -> null).thenRunAsync(() -> {
+            synchronized (writeLock) {
+                if (closed)
+                    return;
+                try {
+                    store.saveEncoded(uuid, data);
+                    pending.remove(uuid, data);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, asyncExecutor);
+        return writes;
+    }
+
+    private TrackedInventory getInventory(UUID uuid) {
+        TrackedInventory inventory = inventories.get(uuid);
+        if (inventory == null)
+            throw new IllegalStateException("The inventory " + uuid + " is not being tracked");
+        return inventory;
+    }
+
+    private ItemStack copy(ItemStack item) {
+        return item == null ? null : item.clone();
+    }
+
+    private static class TrackedInventory {
+
+        private final ItemStack[] items;
+        private final byte[][] encoded;
+        private final BitSet dirty = new BitSet();
+        private boolean resized;
+
+        TrackedInventory(int size) {
+            items = new ItemStack[size];
+            encoded = new byte[size][];
+        }
+
+        boolean isDirty() {
+            return resized || !dirty.isEmpty();
+        }
+    }
+
+}
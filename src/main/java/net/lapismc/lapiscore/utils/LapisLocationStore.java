@@ -0,0 +1,350 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+
+/**
+ * Stores named locations, such as homes or warps, and answers nearest and radius queries without checking every location
+ * Locations are grouped by world and then by chunk, so a query only looks at the chunks near the location given
+ * <p>
+ * Locations are stored by world name, so locations in worlds that are not loaded can still be added,
+ * the world is looked up when {@link #get(Object)} is called
+ * All methods are synchronized so the store can be used from async tasks
+ *
+ * @param <K> The type used to name locations, e.g. String for warp names or UUID for homes
+ */
+public class LapisLocationStore<K> {
+
+    //Cells are the size of a chunk
+    private static final int CELL_SHIFT = 4;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    private final LocationUtils locationUtils;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private final Map<String, WorldIndex<K>> worlds = new HashMap<>();
+
+    /**
+     * Create an empty store that looks up worlds with the given {@link LocationUtils}
+     *
+     * @param locationUtils Used to parse locations and look up worlds, use a caching instance if possible
+     */
+    public LapisLocationStore(LocationUtils locationUtils) {
+        this.locationUtils = locationUtils;
+    }
+
+    /**
+     * Add or replace a location
+     *
+     * @param key      The name of the location
+     * @param location The location to store
+     */
+    public void add(K key, Location location) {
+        add(key, new LocationUtils.LocationData(location.getWorld().getName(), location.getX(), location.getY(),
+                location.getZ(), location.getYaw(), location.getPitch()));
+    }
+
+    /**
+     * Add or replace a location from a string made by {@link LocationUtils#parseLocationToString(Location)}
+     * The world doesn't need to be loaded
+     *
+     * @param key      The name of the location
+     * @param location The location string
+     * @return true if the string was valid and the location was added
+     */
+    public boolean add(K key, String location) {
+        LocationUtils.LocationData data = locationUtils.parseStringToLocationData(location, null);
+        if (data == null)
+            return false;
+        add(key, data);
+        return true;
+    }
+
+    /**
+     * Add or replace a location
+     *
+     * @param key  The name of the location
+     * @param data The world name and coordinates of the location
+     */
+    public synchronized void add(K key, LocationUtils.LocationData data) {
+        remove(key);
+        Entry<K> entry = new Entry<>(key, data);
+        entries.put(key, entry);
+        worlds.computeIfAbsent(data.getWorldName(), name -> new WorldIndex<>()).add(entry);
+    }
+
+    /**
+     * Remove a location
+     *
+     * @param key The name of the location
+     * @return true if there was a location with this name
+     */
+    public synchronized boolean remove(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null)
+            return false;
+        WorldIndex<K> index = worlds.get(entry.data.getWorldName());
+        index.remove(entry);
+        if (index.size == 0)
+            worlds.remove(entry.data.getWorldName());
+        return true;
+    }
+
+    /**
+     * Get a location, the world is looked up now
+     *
+     * @param key The name of the location
+     * @return The location, or null if there is no location with this name or its world is not loaded
+     */
+    public Location get(K key) {
+        LocationUtils.LocationData data = getData(key);
+        if (data == null)
+            return null;
+        World world = locationUtils.getWorld(data.getWorldName());
+        return world == null ? null : data.toLocation(world);
+    }
+
+    /**
+     * Get the world name and coordinates of a location without looking up the world
+     *
+     * @param key The name of the location
+     * @return The location data, or null if there is no location with this name
+     */
+    public synchronized LocationUtils.LocationData getData(K key) {
+        Entry<K> entry = entries.get(key);
+        return entry == null ? null : entry.data;
+    }
+
+    /**
+     * Get the names of all stored locations
+     *
+     * @return A copy of the set of names
+     */
+    public synchronized Set<K> getKeys() {
+        return new HashSet<>(entries.keySet());
+    }
+
+    /**
+     * Get the number of stored locations
+     *
+     * @return The number of locations
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Find the closest location in the same world
+     *
+     * @param location The location to search from
+     * @return The name of the closest location, or null if there are no locations in this world
+     */
+    public K getNearest(Location location) {
+        return getNearest(location, Double.MAX_VALUE);
+    }
+
+    /**
+     * Find the closest location in the same world within a distance
+     * The search starts in the chunk of the location given and moves outwards one ring of chunks at a time,
+     * it stops once no unchecked chunk could hold anything closer
+     *
+     * @param location    The location to search from
+     * @param maxDistance The furthest away a location can be
+     * @return The name of the closest location, or null if there is none within the distance
+     */
+    public synchronized K getNearest(Location location, double maxDistance) {
+        WorldIndex<K> index = worlds.get(location.getWorld().getName());
+        if (index == null)
+            return null;
+        double x = location.getX(), y = location.getY(), z = location.getZ();
+        int cellX = cell(x), cellZ = cell(z);
+        //The furthest ring that could contain anything
+        int maxRing = Math.max(Math.max(cellX - index.minCellX, index.maxCellX - cellX),
+                Math.max(cellZ - index.minCellZ, index.maxCellZ - cellZ));
+        Entry<K> best = null;
+        double bestDistance = maxDistance * maxDistance;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            //Everything in this ring or further is at least this far away horizontally
+            double ringDistance = (double) (ring - 1) * CELL_SIZE;
+            if (ring > 0 && ringDistance * ringDistance > bestDistance)
+                break;
+            //If the search area has grown larger than the number of filled cells, it is quicker to check them all
+            if ((long) (ring * 2 + 1) * (ring * 2 + 1) > index.cells.size()) {
+                for (List<Entry<K>> cell : index.cells.values()) {
+                    for (Entry<K> entry : cell) {
+                        double distance = entry.distanceSquared(x, y, z);
+                        if (distance <= bestDistance) {
+                            bestDistance = distance;
+                            best = entry;
+                        }
+                    }
+                }
+                break;
+            }
+            for (int dx = -ring; dx <= ring; dx++) {
+                //Only the edge of the square is new in this ring
+                int step = (dx == -ring || dx == ring) ? 1 : ring * 2;
+                for (int dz = -ring; dz <= ring; dz += step) {
+                    List<Entry<K>> cell = index.cells.get(cellKey(cellX + dx, cellZ + dz));
+                    if (cell == null)
+                        continue;
+                    for (Entry<K> entry : cell) {
+                        double distance = entry.distanceSquared(x, y, z);
+                        if (distance <= bestDistance) {
+                            bestDistance = distance;
+                            best = entry;
+                        }
+                    }
+                }
+            }
+        }
+        return best == null ? null : best.key;
+    }
+
+    /**
+     * Find all locations within a radius
+     *
+     * @param location The center of the search
+     * @param radius   The radius to search within
+     * @return The names of the locations within the radius, in no particular order
+     */
+    public synchronized List<K> getWithinRadius(Location location, double radius) {
+        List<K> result = new ArrayList<>();
+        forEachWithinRadius(location, radius, entry -> {
+            result.add(entry.key);
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * Check if there are any locations within a radius, this stops at the first location found
+     *
+     * @param location The center of the search
+     * @param radius   The radius to search within
+     * @return true if a location is within the radius
+     */
+    public synchronized boolean isAnyWithinRadius(Location location, double radius) {
+        boolean[] found = new boolean[1];
+        forEachWithinRadius(location, radius, entry -> {
+            found[0] = true;
+            return false;
+        });
+        return found[0];
+    }
+
+    /**
+     * Visit each entry within the radius until the visitor returns false
+     */
+    private void forEachWithinRadius(Location location, double radius, EntryVisitor<K> visitor) {
+        WorldIndex<K> index = worlds.get(location.getWorld().getName());
+        if (index == null)
+            return;
+        double x = location.getX(), y = location.getY(), z = location.getZ();
+        double radiusSquared = radius * radius;
+        int minX = Math.max(cell(x - radius), index.minCellX), maxX = Math.min(cell(x + radius), index.maxCellX);
+        int minZ = Math.max(cell(z - radius), index.minCellZ), maxZ = Math.min(cell(z + radius), index.maxCellZ);
+        //If the radius covers more cells than there are filled cells, it is quicker to check the filled cells
+        if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > index.cells.size()) {
+            for (List<Entry<K>> cell : index.cells.values()) {
+                if (!visitCell(cell, x, y, z, radiusSquared, visitor))
+                    return;
+            }
+            return;
+        }
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                List<Entry<K>> cell = index.cells.get(cellKey(cellX, cellZ));
+                if (cell != null && !visitCell(cell, x, y, z, radiusSquared, visitor))
+                    return;
+            }
+        }
+    }
+
+    private boolean visitCell(List<Entry<K>> cell, double x, double y, double z, double radiusSquared, EntryVisitor<K> visitor) {
+        for (Entry<K> entry : cell) {
+            if (entry.distanceSquared(x, y, z) <= radiusSquared && !visitor.visit(entry))
+                return false;
+        }
+        return true;
+    }
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate) >> CELL_SHIFT;
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    private interface EntryVisitor<K> {
+        boolean visit(Entry<K> entry);
+    }
+
+    private static class Entry<K> {
+
+        private final K key;
+        private final LocationUtils.LocationData data;
+        private final long cellKey;
+
+        Entry(K key, LocationUtils.LocationData data) {
+            this.key = key;
+            this.data = data;
+            cellKey = cellKey(cell(data.getX()), cell(data.getZ()));
+        }
+
+        double distanceSquared(double x, double y, double z) {
+            double dx = data.getX() - x, dy = data.getY() - y, dz = data.getZ() - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * The locations in a single world, grouped by chunk
+     * The bounds only ever grow, they are just used to know when a search can stop
+     */
+    private static class WorldIndex<K> {
+
+        private final Map<Long, List<Entry<K>>> cells = new HashMap<>();
+        private int size;
+        private int minCellX = Integer.MAX_VALUE, maxCellX = Integer.MIN_VALUE;
+        private int minCellZ = Integer.MAX_VALUE, maxCellZ = Integer.MIN_VALUE;
+
+        void add(Entry<K> entry) {
+            cells.computeIfAbsent(entry.cellKey, k -> new ArrayList<>(2)).add(entry);
+            size++;
+            int cellX = cell(entry.data.getX()), cellZ = cell(entry.data.getZ());
+            minCellX = Math.min(minCellX, cellX);
+            maxCellX = Math.max(maxCellX, cellX);
+            minCellZ = Math.min(minCellZ, cellZ);
+            maxCellZ = Math.max(maxCellZ, cellZ);
+        }
+
+        void remove(Entry<K> entry) {
+            List<Entry<K>> cell = cells.get(entry.cellKey);
+            if (cell != null && cell.remove(entry)) {
+                size--;
+                if (cell.isEmpty())
+                    cells.remove(entry.cellKey);
+            }
+        }
+    }
+
+}
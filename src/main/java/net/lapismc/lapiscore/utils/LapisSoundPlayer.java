@@ -0,0 +1,251 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import net.lapismc.lapiscore.compatibility.XSound;
+import org.bukkit.Instrument;
+import org.bukkit.Location;
+import org.bukkit.Note;
+import org.bukkit.Sound;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Plays {@link XSound}s through a {@link LapisTaskHandler} so that sounds work on Folia as well as Bukkit
+ * Sounds for a player are played by the thread that owns the player, and sounds at a location by the thread that owns the location
+ * <p>
+ * Repeating sounds are returned as {@link LapisTaskHandler.LapisTask}s and are added to the task handler,
+ * so they are stopped when the plugin disables
+ */
+public class LapisSoundPlayer {
+
+    private final LapisTaskHandler tasks;
+
+    /**
+     * Create a sound player
+     *
+     * @param tasks The task handler to schedule sounds with
+     */
+    public LapisSoundPlayer(LapisTaskHandler tasks) {
+        this.tasks = tasks;
+    }
+
+    /**
+     * Play a sound to a single player, this is safe to call from any thread
+     *
+     * @param player The player to play the sound to
+     * @param record The sound to play, e.g. from {@link XSound#parse(String)}, it is not modified
+     */
+    public void play(Player player, XSound.Record record) {
+        XSound.Record copy = record.clone().forPlayer(player);
+        tasks.runTaskForSender(copy::play, player);
+    }
+
+    /**
+     * Parse a sound from the config and play it to a player, this is safe to call from any thread
+     *
+     * @param player The player to play the sound to
+     * @param sound  The sound string, see {@link XSound#parse(String)}
+     * @return A future with the sound that was played, or null if the string was none or invalid
+     */
+    public CompletableFuture<XSound.Record> play(Player player, String sound) {
+        CompletableFuture<XSound.Record> future = new CompletableFuture<>();
+        XSound.Record record;
+        try {
+            record = XSound.parse(sound);
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            record = null;
+        }
+        if (record == null) {
+            future.complete(null);
+            return future;
+        }
+        XSound.Record played = record.forPlayer(player);
+        tasks.runTaskForSender(() -> {
+            played.play();
+            future.complete(played);
+        }, player);
+        return future;
+    }
+
+    /**
+     * Play a sound at a location for everyone nearby to hear, this is safe to call from any thread
+     *
+     * @param location The location to play the sound at
+     * @param record   The sound to play, it is not modified
+     */
+    public void play(Location location, XSound.Record record) {
+        XSound.Record copy = record.clone().forPlayerAtLocation(null, location);
+        tasks.runRegionalTaskNow(copy::play, location);
+    }
+
+    /**
+     * Play a sound from one location to many players in a single task, e.g. everyone in an arena
+     * Only the given players hear the sound, they should be near the location so that they are owned by the same region on Folia
+     *
+     * @param location  The location the sound comes from
+     * @param record    The sound to play
+     * @param listeners The players to play the sound to
+     */
+    public void play(Location location, XSound.Record record, Collection<? extends Player> listeners) {
+        Sound sound = record.sound.parseSound();
+        if (sound == null || listeners.isEmpty())
+            return;
+        float volume = record.volume, pitch = record.pitch;
+        tasks.runRegionalTaskNow(() -> {
+            for (Player player : listeners) {
+                player.playSound(location, sound, volume, pitch);
+            }
+        }, location);
+    }
+
+    /**
+     * Play a sound repeatedly at a moving entity's location
+     *
+     * @param entity The entity to follow
+     * @param sound  The sound to play
+     * @param volume The volume of the sound, 1 is normal
+     * @param pitch  The pitch of the sound, 1 is normal
+     * @param repeat How many times to play the sound
+     * @param delay  The delay between each play in ticks
+     * @return The task playing the sound, it cancels itself once finished
+     */
+    public LapisTaskHandler.LapisTask playRepeatedly(Entity entity, XSound sound, float volume, float pitch, int repeat, int delay) {
+        if (repeat <= 0)
+            throw new IllegalArgumentException("Cannot repeat playing sound " + repeat + " times");
+        if (delay <= 0)
+            throw new IllegalArgumentException("Delay ticks must be at least 1");
+        return runRepeating(repeat, count -> sound.play(entity.getLocation(), volume, pitch),
+                repeating -> tasks.runEntityTaskTimer(repeating, repeating::retire, entity, 1, delay));
+    }
+
+    /**
+     * Play a sound repeatedly at a location for everyone nearby to hear
+     *
+     * @param location The location to play the sound at
+     * @param record   The sound to play, it is not modified
+     * @param repeat   How many times to play the sound
+     * @param delay    The delay between each play in ticks
+     * @return The task playing the sound, it cancels itself once finished
+     */
+    public LapisTaskHandler.LapisTask playRepeatedly(Location location, XSound.Record record, int repeat, int delay) {
+        if (repeat <= 0)
+            throw new IllegalArgumentException("Cannot repeat playing sound " + repeat + " times");
+        if (delay <= 0)
+            throw new IllegalArgumentException("Delay ticks must be at least 1");
+        XSound.Record copy = record.clone().forPlayerAtLocation(null, location);
+        return runRepeating(repeat, count -> copy.play(),
+                repeating -> tasks.runRegionalTaskTimer(repeating, location, 1, delay));
+    }
+
+    /**
+     * Play an instrument's notes in an ascending form
+     * The notes are played from the thread that owns playTo, since its location is read each time
+     *
+     * @param player      The player to play the notes to
+     * @param playTo      The entity whose location the notes are played at
+     * @param instrument  The instrument
+     * @param ascendLevel How many notes to play, from 1 to 7
+     * @param delay       The delay between each note in ticks
+     * @return The task playing the notes, it cancels itself once finished
+     */
+    public LapisTaskHandler.LapisTask playAscendingNote(Player player, Entity playTo, Instrument instrument, int ascendLevel, int delay) {
+        if (ascendLevel <= 0)
+            throw new IllegalArgumentException("Note ascend level cannot be lower than 1");
+        if (ascendLevel > 7)
+            throw new IllegalArgumentException("Note ascend level cannot be greater than 7");
+        if (delay <= 0)
+            throw new IllegalArgumentException("Delay ticks must be at least 1");
+        Note.Tone[] tones = Note.Tone.values();
+        return runRepeating(ascendLevel,
+                count -> player.playNote(playTo.getLocation(), instrument, Note.natural(1, tones[count])),
+                repeating -> tasks.runEntityTaskTimer(repeating, repeating::retire, playTo, 1, delay));
+    }
+
+    /**
+     * Run an action a number of times with a timer from the task handler, the task is tracked until it finishes
+     */
+    private LapisTaskHandler.LapisTask runRepeating(int times, RepeatingAction action,
+                                                    Function<RepeatingTask, LapisTaskHandler.LapisTask> schedule) {
+        RepeatingTask repeating = new RepeatingTask(times, action);
+        LapisTaskHandler.LapisTask task = schedule.apply(repeating);
+        tasks.addTask(task);
+        repeating.setTask(task);
+        return task;
+    }
+
+    /**
+     * Runs an action a number of times and then cancels its own task
+     * On Folia the task may run on another thread before the scheduling thread has stored it,
+     * so whichever thread has both the task and the last run does the cancel
+     */
+    private class RepeatingTask implements Runnable {
+
+        private final int times;
+        private final RepeatingAction action;
+        private int count;
+        private LapisTaskHandler.LapisTask task;
+        private boolean finished, stopped;
+
+        RepeatingTask(int times, RepeatingAction action) {
+            this.times = times;
+            this.action = action;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (finished)
+                return;
+            action.run(count++);
+            if (count >= times) {
+                finished = true;
+                stop();
+            }
+        }
+
+        /**
+         * Called when the entity the task runs on is removed, Folia stops the task so it only needs to be untracked
+         */
+        synchronized void retire() {
+            finished = true;
+            stop();
+        }
+
+        synchronized void setTask(LapisTaskHandler.LapisTask task) {
+            this.task = task;
+            stop();
+        }
+
+        private void stop() {
+            if (!finished || task == null || stopped)
+                return;
+            stopped = true;
+            task.cancel();
+            tasks.removeTask(task);
+        }
+    }
+
+    private interface RepeatingAction {
+        void run(int count);
+    }
+
+}
@@ -21,10 +21,13 @@ import net.lapismc.lapiscore.LapisCorePlugin;
 import net.lapismc.lapiscore.compatibility.ServerImplementations;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A class for storing BukkitTasks so that they can be cleanly canceled when the plugin disables
@@ -34,7 +37,8 @@ import java.util.List;
 public class LapisTaskHandler {
 
     private final LapisCorePlugin plugin;
-    private final List<LapisTask> tasks = new ArrayList<>();
+    //Tasks can remove themselves from other threads, e.g. entity threads on Folia
+    private final List<LapisTask> tasks = new CopyOnWriteArrayList<>();
     private final boolean isFolia;
     private final List<Runnable> shutdownTasks = new ArrayList<>();
 
@@ -79,6 +83,35 @@ public class LapisTaskHandler {
         }
     }
 
+    /**
+     * Run a task on a new virtual thread
+     * Virtual threads are cheap to create and are best suited to tasks that spend most of their time waiting on storage or network I/O
+     *
+     * @param runnable The task to run
+     * @return a LapisTask object that can be used to cancel the task
+     */
+    public LapisTask runVirtualTask(Runnable runnable) {
+        return new LapisTask(Thread.ofVirtual().name(plugin.getName() + "-virtual").unstarted(runnable));
+    }
+
+    /**
+     * Run a task on the thread that owns the given command sender
+     * For Folia this is the entity scheduler of a player, or the global region for console
+     * For Bukkit this is the main thread, the task will run now if we are already on the main thread
+     * Use this to send messages or change a player from an async task
+     *
+     * @param runnable The task to run
+     * @param sender   The sender that the task relates to
+     */
+    public void runTaskForSender(Runnable runnable, CommandSender sender) {
+        if (isFolia() && sender instanceof Entity) {
+            //This will not run if the entity has been removed, e.g. the player left
+            ((Entity) sender).getScheduler().run(plugin, t -> runnable.run(), null);
+        } else {
+            runSynchronousTaskNow(runnable);
+        }
+    }
+
     /**
      * Run a task that is relevant to a location in the world, this will run now, not on next tick
      * This should be used if editing the world like placing blocks
@@ -155,6 +188,64 @@ public class LapisTaskHandler {
         }
     }
 
+    /**
+     * Run a task repeatedly on the thread that owns an entity
+     * For Folia this is the entity scheduler, the task stops when the entity is removed
+     * For Bukkit this is the main thread
+     *
+     * @param runnable    The task to run
+     * @param entity      The entity the task relates to
+     * @param delayTicks  The delay before first run in ticks, Folia requires at least 1
+     * @param periodTicks The delay between each run in ticks
+     * @return a LapisTask object that can be used to cancel the task
+     */
+    public LapisTask runEntityTaskTimer(Runnable runnable, Entity entity, long delayTicks, long periodTicks) {
+        return runEntityTaskTimer(runnable, null, entity, delayTicks, periodTicks);
+    }
+
+    /**
+     * Run a task repeatedly on the thread that owns an entity
+     * For Folia this is the entity scheduler, the task stops when the entity is removed and retired is run
+     * For Bukkit this is the main thread, and retired is never run
+     *
+     * @param runnable    The task to run
+     * @param retired     Run if the entity is removed, including before the task could be scheduled, may be null
+     * @param entity      The entity the task relates to
+     * @param delayTicks  The delay before first run in ticks, Folia requires at least 1
+     * @param periodTicks The delay between each run in ticks
+     * @return a LapisTask object that can be used to cancel the task
+     */
+    public LapisTask runEntityTaskTimer(Runnable runnable, Runnable retired, Entity entity, long delayTicks, long periodTicks) {
+        if (isFolia()) {
+            ScheduledTask task = entity.getScheduler().runAtFixedRate(plugin, t -> runnable.run(), retired,
+                    Math.max(1, delayTicks), periodTicks);
+            //Folia returns no task, and doesn't call retired, if the entity was already removed
+            if (task == null && retired != null)
+                retired.run();
+            return new LapisTask(task);
+        } else
+            return new LapisTask(Bukkit.getScheduler().runTaskTimer(plugin, runnable, delayTicks, periodTicks));
+    }
+
+    /**
+     * Run a task repeatedly on the thread that owns a location
+     * For Folia this is the region scheduler
+     * For Bukkit this is the main thread
+     *
+     * @param runnable    The task to run
+     * @param location    Where this task will take place
+     * @param delayTicks  The delay before first run in ticks, Folia requires at least 1
+     * @param periodTicks The delay between each run in ticks
+     * @return a LapisTask object that can be used to cancel the task
+     */
+    public LapisTask runRegionalTaskTimer(Runnable runnable, Location location, long delayTicks, long periodTicks) {
+        if (isFolia())
+            return new LapisTask(Bukkit.getRegionScheduler().runAtFixedRate(plugin, location, t -> runnable.run(),
+                    Math.max(1, delayTicks), periodTicks));
+        else
+            return new LapisTask(Bukkit.getScheduler().runTaskTimer(plugin, runnable, delayTicks, periodTicks));
+    }
+
     /**
      * Add a task so that it can be canceled later
      *
@@ -197,7 +288,7 @@ public class LapisTaskHandler {
     public static class LapisTask {
 
         private ScheduledTask foliaTask;
-        private LapisThread thread;
+        private Thread thread;
         private BukkitTask bukkitTask;
 
         /**
@@ -210,11 +301,11 @@ public class LapisTaskHandler {
         }
 
         /**
-         * Register a LapisThread from TaskHandler
+         * Register a LapisThread or virtual thread from TaskHandler, the thread is started here
          *
          * @param thread The thread to register
          */
-        LapisTask(LapisThread thread) {
+        LapisTask(Thread thread) {
             this.thread = thread;
             thread.start();
         }
@@ -232,12 +323,15 @@ public class LapisTaskHandler {
          * Cancel the task
          */
         public void cancel() {
+            //Folia returns no task if the entity was removed before the task could be scheduled
             if (foliaTask != null)
                 foliaTask.cancel();
             else if (bukkitTask != null)
                 bukkitTask.cancel();
+            else if (thread instanceof LapisThread)
+                ((LapisThread) thread).cancel();
             else if (thread != null)
-                thread.cancel();
+                thread.interrupt();
         }
     }
 
@@ -16,16 +16,60 @@
 
 package net.lapismc.lapiscore.utils;
 
+import net.lapismc.lapiscore.LapisCorePlugin;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * A util for parsing Location objects to and from String objects
  * Primarily used for storing locations in configs
+ * <p>
+ * Locations can also be stored in a fixed width binary format, see {@link #writeLocation(ByteBuffer, Location)}
+ * When created with {@link #LocationUtils(LapisCorePlugin)} world lookups are cached until a world loads or unloads
  */
 public class LocationUtils {
 
+    /**
+     * The number of bytes used by a location in the binary format, world UUID, x, y, z, yaw and pitch
+     */
+    public static final int BINARY_SIZE = 16 + 8 * 3 + 4 * 2;
+    //Powers of ten that can be represented exactly by a double
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final boolean cacheWorlds;
+    private final Map<String, World> worldsByName = new ConcurrentHashMap<>();
+    private final Map<UUID, World> worldsById = new ConcurrentHashMap<>();
+
+    /**
+     * Create a LocationUtils that looks up worlds every time
+     */
+    public LocationUtils() {
+        cacheWorlds = false;
+    }
+
+    /**
+     * Create a LocationUtils that caches world lookups, useful when parsing many locations
+     * A listener is registered to clear the cache when worlds are loaded or unloaded
+     *
+     * @param core The plugin to register the listener with
+     */
+    public LocationUtils(LapisCorePlugin core) {
+        cacheWorlds = true;
+        Bukkit.getPluginManager().registerEvents(new WorldCacheListener(), core);
+    }
+
     /**
      * Creates a config safe String from a Location
      *
@@ -33,8 +77,11 @@ public class LocationUtils {
      * @return Returns a string that holds all the information of the Location provided
      */
     public String parseLocationToString(Location loc) {
-        return loc.getWorld().getName() + "," + loc.getX() + "," + loc.getY() + ","
-                + loc.getZ() + "," + loc.getPitch() + "," + loc.getYaw();
+        String worldName = loc.getWorld().getName();
+        //Enough space for the world name and six numbers without the builder having to grow
+        return new StringBuilder(worldName.length() + 6 * 24).append(worldName).append(',')
+                .append(loc.getX()).append(',').append(loc.getY()).append(',').append(loc.getZ()).append(',')
+                .append(loc.getPitch()).append(',').append(loc.getYaw()).toString();
     }
 
     /**
@@ -44,28 +91,391 @@ public class LocationUtils {
      * @return Returns a Location object, Null if the String is null or "" or if the world doesn't exist
      */
     public Location parseStringToLocation(String s) {
-        if (s == null || s.equals("")) {
+        return parseStringToLocation(s, null);
+    }
+
+    /**
+     * Creates a Location object from a String, reporting why it failed if it can't be parsed
+     *
+     * @param s            The String created by the {@link #parseLocationToString(Location)} method
+     * @param errorHandler Given a description of the problem if the location can't be parsed, may be null
+     * @return Returns a Location object, Null if the String is null or "" or invalid, or if the world doesn't exist
+     */
+    public Location parseStringToLocation(String s, Consumer<String> errorHandler) {
+        LocationData data = parseStringToLocationData(s, errorHandler);
+        if (data == null)
+            return null;
+        World world = getWorld(data.getWorldName());
+        if (world == null) {
+            if (errorHandler != null)
+                errorHandler.accept("The world " + data.getWorldName() + " is not loaded");
             return null;
         }
-        Location loc;
+        return data.toLocation(world);
+    }
+
+    /**
+     * Parse a String into its world name and coordinates without looking up the world
+     * This allows locations in worlds that are not loaded to be read, see {@link LocationData#toLocation(World)}
+     * Strings in the exact format written by {@link #parseLocationToString(Location)} are read in a single pass without
+     * regular expressions or exceptions, anything else is passed to the original split based parser so that strings
+     * that were accepted before, e.g. with tabs, extra values or number suffixes, still load
+     *
+     * @param s            The String created by the {@link #parseLocationToString(Location)} method
+     * @param errorHandler Given a description of the problem if the location can't be parsed, may be null
+     * @return The parsed location data, or null if the String is null or "" or invalid
+     */
+    public LocationData parseStringToLocationData(String s, Consumer<String> errorHandler) {
+        if (s == null || s.isEmpty()) {
+            return null;
+        }
+        LocationData data = parseExactFormat(s);
+        return data != null ? data : parseLegacyFormat(s, errorHandler);
+    }
+
+    /**
+     * The fast path for the world name followed by exactly five numbers
+     *
+     * @return The parsed location data, or null if the string isn't exactly in this format
+     */
+    private LocationData parseExactFormat(String s) {
+        //The world name followed by x, y, z, pitch and yaw
+        double[] values = new double[5];
+        int start = s.indexOf(',');
+        if (start <= 0)
+            return null;
+        for (int i = 0; i < values.length; i++) {
+            int end = s.indexOf(',', start + 1);
+            if (end == -1)
+                end = s.length();
+            //The last value must reach the end of the string and the others must not
+            if ((i < values.length - 1) == (end == s.length()))
+                return null;
+            double value = parseDouble(s, start + 1, end);
+            if (Double.isNaN(value))
+                return null;
+            values[i] = value;
+            start = end;
+        }
+        return new LocationData(s.substring(0, s.indexOf(',')), values[0], values[1], values[2],
+                (float) values[4], (float) values[3]);
+    }
+
+    /**
+     * The parser LocationUtils has always used, kept for strings that don't match the exact format
+     * Values are trimmed by the number parsers, and anything after the sixth value is ignored
+     */
+    private LocationData parseLegacyFormat(String s, Consumer<String> errorHandler) {
         String[] args = s.split(",");
-        String worldName = args[0];
-        if (Bukkit.getServer().getWorld(worldName) == null) {
+        if (args.length == 0 || args[0].isEmpty()) {
+            reportError(errorHandler, s, "it has no world name");
             return null;
         }
-        World world = Bukkit.getServer().getWorld(worldName);
+        if (args.length < 6) {
+            reportError(errorHandler, s, "it has too few values");
+            return null;
+        }
+        int current = 1;
         try {
-            float pitch = Float.parseFloat(args[4]);
-            float yaw = Float.parseFloat(args[5]);
-            double x = Double.parseDouble(args[1]);
-            double y = Double.parseDouble(args[2]);
-            double z = Double.parseDouble(args[3]);
-            loc = new Location(world, x, y, z, yaw, pitch);
+            double x = Double.parseDouble(args[current++]);
+            double y = Double.parseDouble(args[current++]);
+            double z = Double.parseDouble(args[current++]);
+            float pitch = Float.parseFloat(args[current++]);
+            float yaw = Float.parseFloat(args[current]);
+            return new LocationData(args[0], x, y, z, yaw, pitch);
         } catch (NumberFormatException e) {
-            e.printStackTrace();
+            reportError(errorHandler, s, "\"" + args[current] + "\" is not a number");
+            return null;
+        }
+    }
+
+    /**
+     * Write a location into a buffer using {@link #BINARY_SIZE} bytes
+     * The world is stored by UUID so that renaming a world doesn't lose the location
+     *
+     * @param buffer The buffer to write into
+     * @param loc    The location to write
+     */
+    public void writeLocation(ByteBuffer buffer, Location loc) {
+        UUID world = loc.getWorld().getUID();
+        buffer.putLong(world.getMostSignificantBits()).putLong(world.getLeastSignificantBits())
+                .putDouble(loc.getX()).putDouble(loc.getY()).putDouble(loc.getZ())
+                .putFloat(loc.getYaw()).putFloat(loc.getPitch());
+    }
+
+    /**
+     * Read a location written by {@link #writeLocation(ByteBuffer, Location)}
+     * The buffer is always moved forward by {@link #BINARY_SIZE} bytes, even if the world is not loaded
+     *
+     * @param buffer The buffer to read from
+     * @return The location, or null if the world is not loaded
+     */
+    public Location readLocation(ByteBuffer buffer) {
+        UUID worldId = new UUID(buffer.getLong(), buffer.getLong());
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        double z = buffer.getDouble();
+        float yaw = buffer.getFloat();
+        float pitch = buffer.getFloat();
+        World world = getWorld(worldId);
+        if (world == null)
+            return null;
+        return new Location(world, x, y, z, yaw, pitch);
+    }
+
+    /**
+     * Encode a single location in the binary format
+     *
+     * @param loc The location to encode
+     * @return A byte array of length {@link #BINARY_SIZE}
+     */
+    public byte[] encodeLocation(Location loc) {
+        ByteBuffer buffer = ByteBuffer.allocate(BINARY_SIZE);
+        writeLocation(buffer, loc);
+        return buffer.array();
+    }
+
+    /**
+     * Decode a single location from the binary format
+     *
+     * @param data A byte array created by {@link #encodeLocation(Location)}
+     * @return The location, or null if the data is the wrong length or the world is not loaded
+     */
+    public Location decodeLocation(byte[] data) {
+        if (data == null || data.length != BINARY_SIZE)
             return null;
+        return readLocation(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Get a world by name, using the cache if it is enabled
+     *
+     * @param name The name of the world
+     * @return The world, or null if it is not loaded
+     */
+    public World getWorld(String name) {
+        if (!cacheWorlds)
+            return Bukkit.getWorld(name);
+        World world = worldsByName.get(name);
+        if (world == null) {
+            world = Bukkit.getWorld(name);
+            //We don't cache missing worlds since they might be loaded later
+            if (world != null)
+                worldsByName.put(name, world);
+        }
+        return world;
+    }
+
+    /**
+     * Get a world by UUID, using the cache if it is enabled
+     *
+     * @param uuid The UUID of the world
+     * @return The world, or null if it is not loaded
+     */
+    public World getWorld(UUID uuid) {
+        if (!cacheWorlds)
+            return Bukkit.getWorld(uuid);
+        World world = worldsById.get(uuid);
+        if (world == null) {
+            world = Bukkit.getWorld(uuid);
+            if (world != null)
+                worldsById.put(uuid, world);
+        }
+        return world;
+    }
+
+    private void reportError(Consumer<String> errorHandler, String s, String reason) {
+        if (errorHandler != null)
+            errorHandler.accept("Failed to parse the location \"" + s + "\" because " + reason);
+    }
+
+    /**
+     * Parse part of a string as a double without creating a substring in the common case
+     * Plain decimals with up to 15 significant digits are converted exactly with one division,
+     * anything else, such as exponents, is checked and then passed to {@link Double#parseDouble(String)}
+     *
+     * @return The value, or NaN if the text isn't a valid number
+     */
+    private double parseDouble(String s, int start, int end) {
+        //Ignore surrounding spaces like Double.parseDouble does
+        while (start < end && s.charAt(start) == ' ')
+            start++;
+        while (end > start && s.charAt(end - 1) == ' ')
+            end--;
+        if (start == end)
+            return Double.NaN;
+        int i = start;
+        boolean negative = false;
+        char first = s.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digitCount = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean simple = true;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitCount++;
+                //Leading zeros don't count towards the precision limit
+                if (mantissa != 0 || c != '0')
+                    digits++;
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint)
+                    fractionDigits++;
+                if (digits > 15 || fractionDigits > 22) {
+                    simple = false;
+                    break;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+        if (simple) {
+            //A lone sign or point isn't a number
+            if (digitCount == 0)
+                return Double.NaN;
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        return isValidNumber(s, start, end) ? Double.parseDouble(s.substring(start, end)) : Double.NaN;
+    }
+
+    /**
+     * Check that the text matches [+-]digits[.digits][(e|E)[+-]digits] so that {@link Double#parseDouble(String)} can't throw
+     */
+    private boolean isValidNumber(String s, int start, int end) {
+        int i = start;
+        if (s.charAt(i) == '-' || s.charAt(i) == '+')
+            i++;
+        int digits = 0;
+        while (i < end && Character.isDigit(s.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && s.charAt(i) == '.') {
+            i++;
+            while (i < end && Character.isDigit(s.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0)
+            return false;
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+'))
+                i++;
+            int exponentDigits = 0;
+            while (i < end && Character.isDigit(s.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0)
+                return false;
+        }
+        return i == end;
+    }
+
+    /**
+     * The world name and coordinates of a location, without the world having to be loaded
+     */
+    public static class LocationData {
+
+        private final String worldName;
+        private final double x, y, z;
+        private final float yaw, pitch;
+
+        /**
+         * @param worldName The name of the world
+         * @param x         The x coordinate
+         * @param y         The y coordinate
+         * @param z         The z coordinate
+         * @param yaw       The yaw
+         * @param pitch     The pitch
+         */
+        public LocationData(String worldName, double x, double y, double z, float yaw, float pitch) {
+            this.worldName = worldName;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yaw = yaw;
+            this.pitch = pitch;
+        }
+
+        /**
+         * @return The name of the world
+         */
+        public String getWorldName() {
+            return worldName;
+        }
+
+        /**
+         * @return The x coordinate
+         */
+        public double getX() {
+            return x;
+        }
+
+        /**
+         * @return The y coordinate
+         */
+        public double getY() {
+            return y;
+        }
+
+        /**
+         * @return The z coordinate
+         */
+        public double getZ() {
+            return z;
+        }
+
+        /**
+         * @return The yaw
+         */
+        public float getYaw() {
+            return yaw;
+        }
+
+        /**
+         * @return The pitch
+         */
+        public float getPitch() {
+            return pitch;
+        }
+
+        /**
+         * Create a Location in the given world
+         *
+         * @param world The world for the location, this should be the world named by {@link #getWorldName()}
+         * @return A new Location with these coordinates
+         */
+        public Location toLocation(World world) {
+            return new Location(world, x, y, z, yaw, pitch);
+        }
+    }
+
+    private class WorldCacheListener implements Listener {
+
+        @EventHandler
+        public void onWorldLoad(WorldLoadEvent e) {
+            worldsByName.clear();
+            worldsById.clear();
+        }
+
+        @EventHandler
+        public void onWorldUnload(WorldUnloadEvent e) {
+            worldsByName.clear();
+            worldsById.clear();
         }
-        return loc;
     }
 
 }
@@ -34,18 +34,22 @@ import net.lapismc.lapiscore.LapisCorePlugin;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicePriority;
 
 import javax.net.ssl.HttpsURLConnection;
 import java.io.*;
 import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -99,6 +103,7 @@ public class Metrics {
         boolean logErrors = config.getBoolean("logFailedRequests", false);
         boolean logSentData = config.getBoolean("logSentData", false);
         boolean logResponseStatusText = config.getBoolean("logResponseStatusText", false);
+        SharedScheduler shared = enabled ? getSharedScheduler(plugin) : null;
         metricsBase =
                 new // See https://github.com/Bastian/bstats-metrics/pull/126
                         // See https://github.com/Bastian/bstats-metrics/pull/126
@@ -114,14 +119,143 @@ public class Metrics {
                         enabled,
                         this::appendPlatformData,
                         this::appendServiceData,
-                        submitDataTask -> plugin.tasks.runTask(submitDataTask, false),
+                        // Charts are collected on virtual threads with a timeout, so don't wait for them on the main thread
+                        plugin.tasks::runVirtualTask,
                         plugin::isEnabled,
                         (message, error) -> this.plugin.getLogger().log(Level.WARNING, message, error),
                         (message) -> this.plugin.getLogger().log(Level.INFO, message),
                         logErrors,
                         logSentData,
                         logResponseStatusText,
-                        false);
+                        false,
+                        shared);
+        if (shared != null) {
+            Bukkit.getPluginManager().registerEvents(new SharedSchedulerListener(shared), plugin);
+        }
+    }
+
+    /**
+     * Gets the scheduler shared by every Metrics instance on the server, creating it if there isn't one.
+     *
+     * <p>Each plugin has its own copy of this class, so the scheduler is shared through the Bukkit
+     * services manager as a {@link SharedScheduler} and other copies are only accessed through JDK types.
+     * It is shut down by the last {@link MetricsBase} that uses it.
+     *
+     * @param plugin The plugin to register the scheduler for if it has to be created.
+     * @return The shared scheduler, already counting this service as one of its users.
+     */
+    private static synchronized SharedScheduler getSharedScheduler(Plugin plugin) {
+        for (Map.Entry<ScheduledThreadPoolExecutor, AtomicInteger> shared : SharedScheduler.getRegistered()) {
+            AtomicInteger users = shared.getValue();
+            synchronized (users) {
+                // A scheduler whose last user has just left is shut down, it can't be used again
+                if (users.get() > 0) {
+                    users.incrementAndGet();
+                    return new SharedScheduler(shared.getKey(), users);
+                }
+            }
+        }
+        ScheduledThreadPoolExecutor executor =
+                new ScheduledThreadPoolExecutor(
+                        1, Thread.ofPlatform().name("bStats-Metrics").daemon().factory());
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        // Cancelled tasks are removed straight away so that they don't keep their plugin loaded
+        executor.setRemoveOnCancelPolicy(true);
+        SharedScheduler shared = new SharedScheduler(executor, new AtomicInteger(1));
+        Bukkit.getServicesManager().register(SharedScheduler.class, shared, plugin, ServicePriority.Normal);
+        return shared;
+    }
+
+    /**
+     * Keeps the shared scheduler registered while its owner is disabled, and stops this service when
+     * its own plugin is disabled.
+     *
+     * <p>Bukkit removes every service of a plugin when it is disabled, so another plugin that still
+     * uses the scheduler registers it again under itself. Otherwise plugins enabled later would start a
+     * second scheduler.
+     */
+    private class SharedSchedulerListener implements Listener {
+
+        private final SharedScheduler shared;
+
+        private SharedSchedulerListener(SharedScheduler shared) {
+            this.shared = shared;
+        }
+
+        @EventHandler
+        public void onPluginDisable(PluginDisableEvent event) {
+            if (event.getPlugin() == plugin) {
+                shutdown();
+                return;
+            }
+            synchronized (Metrics.class) {
+                if (shared.getKey().isShutdown()) {
+                    return;
+                }
+                for (RegisteredServiceProvider<?> registration : SharedScheduler.getRegistrations()) {
+                    if (registration.getProvider() instanceof Map.Entry<?, ?> entry
+                            && entry.getKey() == shared.getKey()
+                            && registration.getPlugin() != event.getPlugin()) {
+                        // Another enabled plugin still has it registered
+                        return;
+                    }
+                }
+                Bukkit.getServicesManager()
+                        .register(
+                                SharedScheduler.class,
+                                new SharedScheduler(shared.getKey(), shared.getValue()),
+                                plugin,
+                                ServicePriority.Normal);
+            }
+        }
+    }
+
+    /**
+     * The services manager key of the shared scheduler, it pairs the scheduler with the number of
+     * services using it.
+     *
+     * <p>The scheduler and its thread factory are JDK classes so that they don't keep the plugin that
+     * created them loaded. The count is changed while holding its own lock.
+     */
+    public static final class SharedScheduler
+            extends AbstractMap.SimpleImmutableEntry<ScheduledThreadPoolExecutor, AtomicInteger> {
+
+        private SharedScheduler(ScheduledThreadPoolExecutor scheduler, AtomicInteger users) {
+            super(scheduler, users);
+        }
+
+        /**
+         * Gets the registrations of every copy of this class, since every plugin has its own copy.
+         *
+         * @return The registrations of the shared scheduler.
+         */
+        private static List<RegisteredServiceProvider<?>> getRegistrations() {
+            List<RegisteredServiceProvider<?>> registrations = new ArrayList<>();
+            for (Class<?> service : Bukkit.getServicesManager().getKnownServices()) {
+                if (service.getName().endsWith("Metrics$SharedScheduler")) {
+                    registrations.addAll(Bukkit.getServicesManager().getRegistrations(service));
+                }
+            }
+            return registrations;
+        }
+
+        /**
+         * Gets every registered shared scheduler that hasn't been shut down.
+         *
+         * @return The registered schedulers paired with their number of users.
+         */
+        private static List<Map.Entry<ScheduledThreadPoolExecutor, AtomicInteger>> getRegistered() {
+            List<Map.Entry<ScheduledThreadPoolExecutor, AtomicInteger>> registered = new ArrayList<>();
+            for (RegisteredServiceProvider<?> registration : getRegistrations()) {
+                if (registration.getProvider() instanceof Map.Entry<?, ?> entry
+                        && entry.getKey() instanceof ScheduledThreadPoolExecutor executor
+                        && entry.getValue() instanceof AtomicInteger users
+                        && !executor.isShutdown()) {
+                    registered.add(new AbstractMap.SimpleImmutableEntry<>(executor, users));
+                }
+            }
+            return registered;
+        }
     }
 
     /**
@@ -134,6 +268,9 @@ public class Metrics {
     /**
      * Adds a custom chart.
      *
+     * <p>Charts are collected on virtual threads, so their callables must be safe to call off the main
+     * thread and should return within {@link MetricsBase#CHART_TIMEOUT_MILLIS} or they are skipped.
+     *
      * @param chart The chart to add.
      */
     public void addCustomChart(CustomChart chart) {
@@ -180,7 +317,30 @@ public class Metrics {
 
         private static final String REPORT_URL = "https://bStats.org/api/v2/data/%s";
 
-        private final ScheduledExecutorService scheduler;
+        /**
+         * How long all the custom charts together are given to return their data.
+         */
+        public static final long CHART_TIMEOUT_MILLIS = 5000;
+
+        /**
+         * How long the connection to bStats may take to open, and how long each read of the response may
+         * wait for data.
+         */
+        private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+        private static final int READ_TIMEOUT_MILLIS = 30000;
+
+        private final ScheduledThreadPoolExecutor scheduler;
+
+        // The number of services using the scheduler when it is shared, otherwise null
+        private final AtomicInteger sharedUsers;
+
+        // Charts whose last collection hasn't returned yet, these aren't collected again until it does
+        private final Set<CustomChart> runningCharts = ConcurrentHashMap.newKeySet();
+
+        private final List<ScheduledFuture<?>> scheduledTasks = new ArrayList<>(2);
+
+        private boolean shutdown;
 
         private final String platform;
 
@@ -206,7 +366,7 @@ public class Metrics {
 
         private final boolean logResponseStatusText;
 
-        private final Set<CustomChart> customCharts = new HashSet<>();
+        private final Set<CustomChart> customCharts = ConcurrentHashMap.newKeySet();
 
         private final boolean enabled;
 
@@ -247,20 +407,56 @@ public class Metrics {
                 boolean logSentData,
                 boolean logResponseStatusText,
                 boolean skipRelocateCheck) {
+            this(platform, serverUuid, serviceId, enabled, appendPlatformDataConsumer,
+                    appendServiceDataConsumer, submitTaskConsumer, checkServiceEnabledSupplier,
+                    errorLogger, infoLogger, logErrors, logSentData, logResponseStatusText,
+                    skipRelocateCheck, null);
+        }
+
+        /**
+         * Creates a new MetricsBase class instance that submits from a scheduler shared with other
+         * services, see {@link #MetricsBase(String, String, int, boolean, Consumer, Consumer, Consumer,
+         * Supplier, BiConsumer, Consumer, boolean, boolean, boolean, boolean)} for the other parameters.
+         *
+         * @param sharedScheduler The shared scheduler paired with its number of users, which must
+         *     already count this service, or {@code null} to create a scheduler for this service only. A
+         *     shared scheduler is shut down by the last service that uses it.
+         */
+        public MetricsBase(
+                String platform,
+                String serverUuid,
+                int serviceId,
+                boolean enabled,
+                Consumer<JsonObjectBuilder> appendPlatformDataConsumer,
+                Consumer<JsonObjectBuilder> appendServiceDataConsumer,
+                Consumer<Runnable> submitTaskConsumer,
+                Supplier<Boolean> checkServiceEnabledSupplier,
+                BiConsumer<String, Throwable> errorLogger,
+                Consumer<String> infoLogger,
+                boolean logErrors,
+                boolean logSentData,
+                boolean logResponseStatusText,
+                boolean skipRelocateCheck,
+                Map.Entry<ScheduledThreadPoolExecutor, AtomicInteger> sharedScheduler) {
             ScheduledThreadPoolExecutor scheduler =
-                    new ScheduledThreadPoolExecutor(
-                            1,
-                            task -> {
-                                Thread thread = new Thread(task, "bStats-Metrics");
-                                thread.setDaemon(true);
-                                return thread;
-                            });
-            // We want delayed tasks (non-periodic) that will execute in the future to be
-            // cancelled when the scheduler is shutdown.
-            // Otherwise, we risk preventing the server from shutting down even when
-            // MetricsBase#shutdown() is called
-            scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                    sharedScheduler == null ? null : sharedScheduler.getKey();
+            if (scheduler == null) {
+                scheduler =
+                        new ScheduledThreadPoolExecutor(
+                                1,
+                                task -> {
+                                    Thread thread = new Thread(task, "bStats-Metrics");
+                                    thread.setDaemon(true);
+                                    return thread;
+                                });
+                // We want delayed tasks (non-periodic) that will execute in the future to be
+                // cancelled when the scheduler is shutdown.
+                // Otherwise, we risk preventing the server from shutting down even when
+                // MetricsBase#shutdown() is called
+                scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            }
             this.scheduler = scheduler;
+            this.sharedUsers = sharedScheduler == null ? null : sharedScheduler.getValue();
             this.platform = platform;
             this.serverUuid = serverUuid;
             this.serviceId = serviceId;
@@ -288,8 +484,28 @@ public class Metrics {
             this.customCharts.add(chart);
         }
 
-        public void shutdown() {
-            scheduler.shutdown();
+        public synchronized void shutdown() {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            if (sharedUsers == null) {
+                scheduler.shutdown();
+                return;
+            }
+            // Only stop our own tasks, the last service to stop shuts the scheduler down
+            scheduledTasks.forEach(task -> task.cancel(false));
+            synchronized (sharedUsers) {
+                if (sharedUsers.decrementAndGet() > 0) {
+                    return;
+                }
+                scheduler.shutdown();
+            }
+            for (RegisteredServiceProvider<?> registration : SharedScheduler.getRegistrations()) {
+                if (registration.getProvider() instanceof Map.Entry<?, ?> entry && entry.getKey() == scheduler) {
+                    Bukkit.getServicesManager().unregister(registration.getProvider());
+                }
+            }
         }
 
         private void startSubmitting() {
@@ -297,13 +513,15 @@ public class Metrics {
                     () -> {
                         if (!enabled || !checkServiceEnabledSupplier.get()) {
                             // Submitting data or service is disabled
-                            scheduler.shutdown();
+                            shutdown();
                             return;
                         }
+                        // The data is collected and sent off the scheduler thread, so that a slow chart or
+                        // request can't hold back the other services sharing it
                         if (submitTaskConsumer != null) {
                             submitTaskConsumer.accept(this::submitData);
                         } else {
-                            this.submitData();
+                            Thread.ofVirtual().name("bStats-Metrics-submit").start(this::submitData);
                         }
                     };
             // Many servers tend to restart at a fixed time at xx:00 which causes an uneven
@@ -316,60 +534,163 @@ public class Metrics {
             // don't do it!
             long initialDelay = (long) (1000 * 60 * (3 + Math.random() * 3));
             long secondDelay = (long) (1000 * 60 * (Math.random() * 30));
-            scheduler.schedule(submitTask, initialDelay, TimeUnit.MILLISECONDS);
-            scheduler.scheduleAtFixedRate(
-                    submitTask, initialDelay + secondDelay, 1000 * 60 * 30, TimeUnit.MILLISECONDS);
+            synchronized (this) {
+                scheduledTasks.add(scheduler.schedule(submitTask, initialDelay, TimeUnit.MILLISECONDS));
+                scheduledTasks.add(
+                        scheduler.scheduleAtFixedRate(
+                                submitTask, initialDelay + secondDelay, 1000 * 60 * 30, TimeUnit.MILLISECONDS));
+            }
         }
 
-        private void submitData() {
-            final JsonObjectBuilder baseJsonBuilder = new JsonObjectBuilder();
-            appendPlatformDataConsumer.accept(baseJsonBuilder);
-            final JsonObjectBuilder serviceJsonBuilder = new JsonObjectBuilder();
-            appendServiceDataConsumer.accept(serviceJsonBuilder);
-            JsonObjectBuilder.JsonObject[] chartData =
-                    customCharts.stream()
-                            .map(customChart -> customChart.getRequestJsonObject(errorLogger, logErrors))
-                            .filter(Objects::nonNull)
-                            .toArray(JsonObjectBuilder.JsonObject[]::new);
-            serviceJsonBuilder.appendField("id", serviceId);
-            serviceJsonBuilder.appendField("customCharts", chartData);
-            baseJsonBuilder.appendField("service", serviceJsonBuilder.build());
-            baseJsonBuilder.appendField("serverUUID", serverUuid);
-            baseJsonBuilder.appendField("metricsVersion", METRICS_VERSION);
-            JsonObjectBuilder.JsonObject data = baseJsonBuilder.build();
-            scheduler.execute(
-                    () -> {
-                        try {
-                            // Send the data
-                            sendData(data);
-                        } catch (Exception e) {
-                            // Something went wrong! :(
-                            if (logErrors) {
-                                errorLogger.accept("Could not submit bStats metrics data", e);
-                            }
-                        }
-                    });
+        /**
+         * Collects the data of every custom chart at once, each on its own virtual thread.
+         *
+         * <p>All charts share one deadline of {@link #CHART_TIMEOUT_MILLIS}, a chart that hasn't
+         * returned by then is interrupted and left out so that one slow chart can't hold back the rest.
+         * A chart that still hasn't returned by the next submission is skipped rather than called again.
+         *
+         * @return The data of every chart that returned in time and had data.
+         */
+        private JsonObjectBuilder.JsonObject[] collectChartData() {
+            List<Thread> threads = new ArrayList<>();
+            List<CompletableFuture<JsonObjectBuilder.JsonObject>> futures = new ArrayList<>();
+            for (CustomChart customChart : customCharts) {
+                if (!runningCharts.add(customChart)) {
+                    if (logErrors) {
+                        errorLogger.accept("A custom chart is still running from the last submission and was skipped", null);
+                    }
+                    continue;
+                }
+                CompletableFuture<JsonObjectBuilder.JsonObject> future = new CompletableFuture<>();
+                threads.add(
+                        Thread.ofVirtual()
+                                .name("bStats-Metrics-chart")
+                                .start(
+                                        () -> {
+                                            try {
+                                                future.complete(customChart.getRequestJsonObject(errorLogger, logErrors));
+                                            } catch (Throwable t) {
+                                                future.completeExceptionally(t);
+                                            } finally {
+                                                runningCharts.remove(customChart);
+                                            }
+                                        }));
+                futures.add(future);
+            }
+            long deadline = System.currentTimeMillis() + CHART_TIMEOUT_MILLIS;
+            List<JsonObjectBuilder.JsonObject> chartData = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                    JsonObjectBuilder.JsonObject data = futures.get(i).get(remaining, TimeUnit.MILLISECONDS);
+                    if (data != null) {
+                        chartData.add(data);
+                    }
+                } catch (TimeoutException e) {
+                    threads.get(i).interrupt();
+                    if (logErrors) {
+                        errorLogger.accept("A custom chart took longer than " + CHART_TIMEOUT_MILLIS
+                                + "ms to return its data and was skipped", e);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    // getRequestJsonObject logs its own errors, this shouldn't happen
+                    if (logErrors) {
+                        errorLogger.accept("Failed to get data for a custom chart", e.getCause());
+                    }
+                }
+            }
+            return chartData.toArray(new JsonObjectBuilder.JsonObject[0]);
         }
 
-        private void sendData(JsonObjectBuilder.JsonObject data) throws Exception {
-            if (logSentData) {
-                infoLogger.accept("Sent bStats metrics data: " + data.toString());
+        private void submitData() {
+            JsonObjectBuilder.JsonObject[] chartData = collectChartData();
+            // The rest of the data is written as it is sent, see sendData
+            Consumer<JsonObjectBuilder> data =
+                    baseJsonBuilder -> {
+                        appendPlatformDataConsumer.accept(baseJsonBuilder);
+                        baseJsonBuilder.appendField(
+                                "service",
+                                serviceJsonBuilder -> {
+                                    appendServiceDataConsumer.accept(serviceJsonBuilder);
+                                    serviceJsonBuilder.appendField("id", serviceId);
+                                    serviceJsonBuilder.appendField("customCharts", chartData);
+                                });
+                        baseJsonBuilder.appendField("serverUUID", serverUuid);
+                        baseJsonBuilder.appendField("metricsVersion", METRICS_VERSION);
+                    };
+            try {
+                // Send the data
+                sendData(data);
+            } catch (Exception e) {
+                // Something went wrong! :(
+                if (logErrors) {
+                    errorLogger.accept("Could not submit bStats metrics data", e);
+                }
             }
+        }
+
+        /**
+         * Sends the data to bStats, the JSON is written and gzipped straight into the connection as it
+         * is sent rather than being built up in memory first.
+         *
+         * @param data Appends every field of the data to the builder it is given.
+         */
+        private void sendData(Consumer<JsonObjectBuilder> data) throws Exception {
             String url = String.format(REPORT_URL, platform);
             HttpsURLConnection connection = (HttpsURLConnection) new URL(url).openConnection();
-            // Compress the data to save bandwidth
-            byte[] compressedData = compress(data.toString());
+            // Don't let a stalled request hold a thread forever
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            // The logged copy is written alongside the sent data, so it is exactly what was sent
+            StringBuilder sentData = logSentData ? new StringBuilder() : null;
+            String response = sendData(connection, data, sentData);
+            if (logSentData) {
+                infoLogger.accept("Sent bStats metrics data: " + sentData);
+            }
+            if (logResponseStatusText) {
+                infoLogger.accept("Sent data to bStats and received response: " + response);
+            }
+        }
+
+        /**
+         * Posts the data as gzipped JSON over the given connection.
+         *
+         * <p>If the data can't be written the connection is dropped without finishing the request, so
+         * that a partly written body is never sent as a complete request.
+         *
+         * @param connection The connection to send the data over, it must not be connected yet.
+         * @param data Appends every field of the data to the builder it is given.
+         * @param sentData Where a copy of the JSON is written as it is sent, or {@code null}.
+         * @return The response body.
+         */
+        static String sendData(
+                HttpURLConnection connection, Consumer<JsonObjectBuilder> data, StringBuilder sentData)
+                throws IOException {
             connection.setRequestMethod("POST");
             connection.addRequestProperty("Accept", "application/json");
             connection.addRequestProperty("Connection", "close");
             connection.addRequestProperty("Content-Encoding", "gzip");
-            connection.addRequestProperty("Content-Length", String.valueOf(compressedData.length));
             connection.setRequestProperty("Content-Type", "application/json");
             connection.setRequestProperty("User-Agent", "Metrics-Service/1");
             connection.setDoOutput(true);
-            try (DataOutputStream outputStream = new DataOutputStream(connection.getOutputStream())) {
-                outputStream.write(compressedData);
+            // The length isn't known until the data is written, so it is sent in chunks instead
+            connection.setChunkedStreamingMode(0);
+            // Compress the data to save bandwidth
+            Writer writer =
+                    new BufferedWriter(
+                            new OutputStreamWriter(
+                                    new GZIPOutputStream(connection.getOutputStream()), StandardCharsets.UTF_8));
+            try {
+                writeData(data, sentData == null ? writer : new TeeAppendable(writer, sentData));
+            } catch (RuntimeException | Error e) {
+                // Closing the writer would end the request with the JSON cut short
+                connection.disconnect();
+                throw e;
             }
+            writer.close();
             StringBuilder builder = new StringBuilder();
             try (BufferedReader bufferedReader =
                          new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
@@ -378,26 +699,53 @@ public class Metrics {
                     builder.append(line);
                 }
             }
-            if (logResponseStatusText) {
-                infoLogger.accept("Sent data to bStats and received response: " + builder);
-            }
+            return builder.toString();
         }
 
         /**
-         * Gzips the given string.
+         * Writes the data as a JSON object to the given output.
          *
-         * @param str The string to gzip.
-         * @return The gzipped string.
+         * @param data Appends every field of the data to the builder it is given.
+         * @param out Where the JSON is written.
          */
-        private static byte[] compress(final String str) throws IOException {
-            if (str == null) {
-                return null;
+        static void writeData(Consumer<JsonObjectBuilder> data, Appendable out) {
+            JsonObjectBuilder builder = new JsonObjectBuilder(out);
+            data.accept(builder);
+            builder.finish();
+        }
+
+        /** Writes everything appended to it to two outputs. */
+        private static class TeeAppendable implements Appendable {
+
+            private final Appendable first;
+
+            private final Appendable second;
+
+            private TeeAppendable(Appendable first, Appendable second) {
+                this.first = first;
+                this.second = second;
             }
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            try (GZIPOutputStream gzip = new GZIPOutputStream(outputStream)) {
-                gzip.write(str.getBytes(StandardCharsets.UTF_8));
+
+            @Override
+            public Appendable append(CharSequence csq) throws IOException {
+                first.append(csq);
+                second.append(csq);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) throws IOException {
+                first.append(csq, start, end);
+                second.append(csq, start, end);
+                return this;
+            }
+
+            @Override
+            public Appendable append(char c) throws IOException {
+                first.append(c);
+                second.append(c);
+                return this;
             }
-            return outputStream.toByteArray();
         }
 
         /** Checks that the class was properly relocated. */
@@ -709,12 +1057,31 @@ public class Metrics {
      */
     public static class JsonObjectBuilder {
 
-        private StringBuilder builder = new StringBuilder();
+        // The builder's own buffer, null once built or when writing to an output given to the constructor
+        private StringBuilder builder;
+
+        // Where the JSON is written, either the buffer above or the output given to the constructor
+        private final Appendable out;
 
         private boolean hasAtLeastOneField = false;
 
+        private boolean finished = false;
+
         public JsonObjectBuilder() {
-            builder.append("{");
+            builder = new StringBuilder();
+            out = builder;
+            write("{");
+        }
+
+        /**
+         * Creates a builder that writes the JSON straight to the given output as fields are appended,
+         * without building it up in memory first. Call {@link #finish()} once every field is appended.
+         *
+         * @param out Where the JSON is written, e.g. a writer around a compressed stream.
+         */
+        public JsonObjectBuilder(Appendable out) {
+            this.out = out;
+            write("{");
         }
 
         /**
@@ -724,36 +1091,43 @@ public class Metrics {
          * @return A reference to this object.
          */
         public JsonObjectBuilder appendNull(String key) {
-            appendFieldUnescaped(key, "null");
+            startField(key);
+            write("null");
             return this;
         }
 
         /**
-         * Escapes the given string like stated in https://www.ietf.org/rfc/rfc4627.txt.
+         * Escapes the given string like stated in https://www.ietf.org/rfc/rfc4627.txt and writes it
+         * to the output.
          *
          * <p>This method escapes only the necessary characters '"', '\'. and '\u0000' - '\u001F'.
          * Compact escapes are not used (e.g., '\n' is escaped as "\u000a" and not as "\n").
          *
          * @param value The value to escape.
-         * @return The escaped value.
          */
-        private static String escape(String value) {
-            final StringBuilder builder = new StringBuilder();
+        private void writeEscaped(String value) {
             for (int i = 0; i < value.length(); i++) {
                 char c = value.charAt(i);
                 if (c == '"') {
-                    builder.append("\\\"");
+                    write("\\\"");
                 } else if (c == '\\') {
-                    builder.append("\\\\");
+                    write("\\\\");
                 } else if (c <= '\u000F') {
-                    builder.append("\\u000").append(Integer.toHexString(c));
+                    write("\\u000");
+                    write(Character.forDigit(c, 16));
                 } else if (c <= '\u001F') {
-                    builder.append("\\u00").append(Integer.toHexString(c));
+                    write("\\u001");
+                    write(Character.forDigit(c - 16, 16));
                 } else {
-                    builder.append(c);
+                    write(c);
                 }
             }
-            return builder.toString();
+        }
+
+        private void writeString(String value) {
+            write('"');
+            writeEscaped(value);
+            write('"');
         }
 
         /**
@@ -767,7 +1141,8 @@ public class Metrics {
             if (value == null) {
                 throw new IllegalArgumentException("JSON value must not be null");
             }
-            appendFieldUnescaped(key, "\"" + escape(value) + "\"");
+            startField(key);
+            writeString(value);
             return this;
         }
 
@@ -782,7 +1157,26 @@ public class Metrics {
             if (object == null) {
                 throw new IllegalArgumentException("JSON object must not be null");
             }
-            appendFieldUnescaped(key, object.toString());
+            startField(key);
+            write(object.toString());
+            return this;
+        }
+
+        /**
+         * Appends an object to the JSON, the object is written straight to this builder's output.
+         *
+         * @param key The key of the field.
+         * @param object Appends the fields of the object to the builder it is given.
+         * @return A reference to this object.
+         */
+        public JsonObjectBuilder appendField(String key, Consumer<JsonObjectBuilder> object) {
+            if (object == null) {
+                throw new IllegalArgumentException("JSON object must not be null");
+            }
+            startField(key);
+            JsonObjectBuilder objectBuilder = new JsonObjectBuilder(out);
+            object.accept(objectBuilder);
+            objectBuilder.finish();
             return this;
         }
 
@@ -794,7 +1188,8 @@ public class Metrics {
          * @return A reference to this object.
          */
         public JsonObjectBuilder appendField(String key, int value) {
-            appendFieldUnescaped(key, String.valueOf(value));
+            startField(key);
+            write(String.valueOf(value));
             return this;
         }
 
@@ -809,11 +1204,15 @@ public class Metrics {
             if (values == null) {
                 throw new IllegalArgumentException("JSON values must not be null");
             }
-            String escapedValues =
-                    Arrays.stream(values)
-                            .map(value -> "\"" + escape(value) + "\"")
-                            .collect(Collectors.joining(","));
-            appendFieldUnescaped(key, "[" + escapedValues + "]");
+            startField(key);
+            write('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    write(',');
+                }
+                writeString(values[i]);
+            }
+            write(']');
             return this;
         }
 
@@ -828,9 +1227,15 @@ public class Metrics {
             if (values == null) {
                 throw new IllegalArgumentException("JSON values must not be null");
             }
-            String escapedValues =
-                    Arrays.stream(values).mapToObj(String::valueOf).collect(Collectors.joining(","));
-            appendFieldUnescaped(key, "[" + escapedValues + "]");
+            startField(key);
+            write('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    write(',');
+                }
+                write(String.valueOf(values[i]));
+            }
+            write(']');
             return this;
         }
 
@@ -845,9 +1250,15 @@ public class Metrics {
             if (values == null) {
                 throw new IllegalArgumentException("JSON values must not be null");
             }
-            String escapedValues =
-                    Arrays.stream(values).map(JsonObject::toString).collect(Collectors.joining(","));
-            appendFieldUnescaped(key, "[" + escapedValues + "]");
+            startField(key);
+            write('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    write(',');
+                }
+                write(values[i].toString());
+            }
+            write(']');
             return this;
         }
 
@@ -860,31 +1271,60 @@ public class Metrics {
             if (builder == null) {
                 throw new IllegalStateException("JSON has already been built");
             }
-            JsonObject object = new JsonObject(builder.append("}").toString());
+            finish();
+            JsonObject object = new JsonObject(builder.toString());
             builder = null;
             return object;
         }
 
         /**
-         * Appends a field to the object.
+         * Closes the JSON object and invalidates this builder, use this instead of {@link #build()}
+         * when writing to an output given to the constructor.
+         */
+        public void finish() {
+            if (finished) {
+                throw new IllegalStateException("JSON has already been built");
+            }
+            write("}");
+            finished = true;
+        }
+
+        /**
+         * Writes the key of a new field to the object, the value must be written straight after.
          *
          * @param key The key of the field.
-         * @param escapedValue The escaped value of the field.
          */
-        private void appendFieldUnescaped(String key, String escapedValue) {
-            if (builder == null) {
+        private void startField(String key) {
+            if (finished) {
                 throw new IllegalStateException("JSON has already been built");
             }
             if (key == null) {
                 throw new IllegalArgumentException("JSON key must not be null");
             }
             if (hasAtLeastOneField) {
-                builder.append(",");
+                write(',');
             }
-            builder.append("\"").append(escape(key)).append("\":").append(escapedValue);
+            writeString(key);
+            write(':');
             hasAtLeastOneField = true;
         }
 
+        private void write(CharSequence value) {
+            try {
+                out.append(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void write(char value) {
+            try {
+                out.append(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         /**
          * A super simple representation of a JSON object.
          *
@@ -16,21 +16,32 @@
 
 package net.lapismc.lapiscore.utils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bukkit.entity.Player;
 import org.ocpsoft.prettytime.Duration;
 import org.ocpsoft.prettytime.PrettyTime;
+import org.ocpsoft.prettytime.TimeUnit;
+import org.ocpsoft.prettytime.impl.DurationImpl;
 import org.ocpsoft.prettytime.units.JustNow;
 import org.ocpsoft.prettytime.units.Millisecond;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A util class to allow formatting time in a human-readable way using the PrettyTime API
+ * <p>
+ * PrettyTime instances are shared between every PrettyTimeUtil with the same locale and settings,
+ * and formatted strings are cached by the half second, so this is cheap enough to call every tick for scoreboards
  */
 public class PrettyTimeUtil {
 
-    private final PrettyTime prettyTime;
+    //Creating a PrettyTime loads its resource bundles, so we only do it once for each set of settings
+    //This is shared by all instances so that a formatter built for one players locale is reused by every plugin
+    private static final Map<String, Formatter> formatters = new ConcurrentHashMap<>();
+    private final Formatter formatter;
+    private final boolean removeJustNow;
 
     /**
      * Initialize the PrettyTime API with your own locale
@@ -39,11 +50,8 @@ public class PrettyTimeUtil {
      * @param removeJustNow Should "Just Now" be removed as a time unit
      */
     public PrettyTimeUtil(String locale, boolean removeJustNow) {
-        Locale loc = new Locale(locale);
-        prettyTime = new PrettyTime(loc);
-        if (removeJustNow)
-            prettyTime.removeUnit(JustNow.class);
-        prettyTime.removeUnit(Millisecond.class);
+        this.removeJustNow = removeJustNow;
+        formatter = getFormatter(Locale.of(locale), removeJustNow);
     }
 
     /**
@@ -71,7 +79,7 @@ public class PrettyTimeUtil {
      * @return a String with the human-readable time difference between now and the time given
      */
     public String getRelativeTimeDifference(Long epoch, int units) {
-        return prettyTime.format(reduceDurationList(prettyTime.calculatePreciseDuration(new Date(epoch)), units));
+        return formatter.format(epoch, units, true);
     }
 
     /**
@@ -83,7 +91,35 @@ public class PrettyTimeUtil {
      * @return a String with the human-readable time difference between now and the time given
      */
     public String getCleanTimeDifference(Long epoch, int units) {
-        return prettyTime.formatDuration(reduceDurationList(prettyTime.calculatePreciseDuration(new Date(epoch)), units));
+        return formatter.format(epoch, units, false);
+    }
+
+    /**
+     * Get the time difference between now and the time epoch given as human-readable text in the players language
+     * This will include relative terms like "ago" and "from now" at the end
+     * <p>
+     * Formatters are created the first time a locale is used and are then shared by every PrettyTimeUtil
+     *
+     * @param epoch  The time to calculate from, use of {@link System#currentTimeMillis()} is recommended
+     * @param units  How many units should be displayed in the string, 2 is recommended
+     * @param player The player whose client locale should be used
+     * @return a String with the human-readable time difference between now and the time given
+     */
+    public String format(Long epoch, int units, Player player) {
+        return getFormatter(player).format(epoch, units, true);
+    }
+
+    /**
+     * Get the time difference between now and the time epoch given as human-readable text in the players language
+     * Will not include relative terms at the end of the string
+     *
+     * @param epoch  The time to calculate from, use of {@link System#currentTimeMillis()} is recommended
+     * @param units  How many units should be displayed in the string, 2 is recommended
+     * @param player The player whose client locale should be used
+     * @return a String with the human-readable time difference between now and the time given
+     */
+    public String getCleanTimeDifference(Long epoch, int units, Player player) {
+        return getFormatter(player).format(epoch, units, false);
     }
 
     /**
@@ -94,16 +130,122 @@ public class PrettyTimeUtil {
      * @return a list of the largest units from the provided list of the length requested
      */
     public List<Duration> reduceDurationList(List<Duration> durationList, int numberOfUnitsToKeep) {
-        while (durationList.size() > numberOfUnitsToKeep) {
-            Duration smallest = null;
-            for (Duration current : durationList) {
-                if (smallest == null || smallest.getUnit().getMillisPerUnit() > current.getUnit().getMillisPerUnit()) {
-                    smallest = current;
+        if (durationList.size() <= numberOfUnitsToKeep)
+            return durationList;
+        //Sort a copy largest unit first, then keep the first entries while preserving the order of the original list
+        List<Duration> sorted = new ArrayList<>(durationList);
+        sorted.sort(Comparator.comparingLong((Duration d) -> d.getUnit().getMillisPerUnit()).reversed());
+        Set<Duration> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(sorted.subList(0, Math.max(0, numberOfUnitsToKeep)));
+        durationList.removeIf(d -> !kept.contains(d));
+        return durationList;
+    }
+
+    private Formatter getFormatter(Player player) {
+        //Player#locale() is Paper only, so parse the Spigot locale string, e.g. en_us
+        String locale = player == null ? null : player.getLocale();
+        return locale == null || locale.isEmpty() ? formatter
+                : getFormatter(Locale.forLanguageTag(locale.replace('_', '-')), removeJustNow);
+    }
+
+    private static Formatter getFormatter(Locale locale, boolean removeJustNow) {
+        return formatters.computeIfAbsent(locale.toLanguageTag() + ":" + removeJustNow,
+                key -> new Formatter(locale, removeJustNow));
+    }
+
+    /**
+     * A shared PrettyTime instance and a cache of the strings it has formatted
+     * Durations are calculated directly from the difference in milliseconds in the same way as
+     * {@link PrettyTime#calculatePreciseDuration(Date)}, but stop once enough units have been found
+     */
+    private static class Formatter {
+
+        private final PrettyTime prettyTime;
+        private final TimeUnit[] units;
+        //Keyed by the difference in half seconds, its sign, the number of units and if it is relative, see format
+        private final Cache<Long, String> cache = CacheBuilder.newBuilder().maximumSize(4096).build();
+
+        Formatter(Locale locale, boolean removeJustNow) {
+            prettyTime = new PrettyTime(locale);
+            if (removeJustNow)
+                prettyTime.removeUnit(JustNow.class);
+            prettyTime.removeUnit(Millisecond.class);
+            List<TimeUnit> unitList = new ArrayList<>(prettyTime.getUnits());
+            unitList.sort(Comparator.comparingLong(TimeUnit::getMillisPerUnit));
+            units = unitList.toArray(new TimeUnit[0]);
+        }
+
+        String format(long epoch, int unitCount, boolean relative) {
+            long difference = epoch - System.currentTimeMillis();
+            //Everything within the same half second is formatted the same, which is what allows caching
+            //PrettyTime rounds the last unit up when more than half of it is left over, so whole seconds aren't precise enough
+            //The sign is kept separately, otherwise less than half a second ago would share a bucket with from now
+            boolean past = difference < 0;
+            long halfSeconds = Math.abs(difference) / 500;
+            //Each bucket is formatted from its middle so that it rounds the same way as the times inside it
+            long bucket = (halfSeconds * 500 + 250) * (past ? -1 : 1);
+            if (unitCount < 1 || unitCount > 15)
+                return formatDurations(calculateDurations(bucket, unitCount), relative);
+            long key = (halfSeconds * 2 + (past ? 1 : 0)) * 32 + unitCount * 2 + (relative ? 1 : 0);
+            String result = cache.getIfPresent(key);
+            if (result == null) {
+                result = formatDurations(calculateDurations(bucket, unitCount), relative);
+                cache.put(key, result);
+            }
+            return result;
+        }
+
+        private String formatDurations(List<Duration> durations, boolean relative) {
+            //PrettyTime lazily loads its formats, so it isn't safe to format from two threads at once
+            synchronized (prettyTime) {
+                return relative ? prettyTime.format(durations) : prettyTime.formatDuration(durations);
+            }
+        }
+
+        private List<Duration> calculateDurations(long difference, int unitCount) {
+            List<Duration> durations = new ArrayList<>(Math.max(1, unitCount));
+            Duration duration = calculateDuration(difference);
+            durations.add(duration);
+            while (durations.size() < unitCount && duration.getDelta() != 0) {
+                Duration next = calculateDuration(duration.getDelta());
+                //Stop if we can't break the remainder down any further
+                if (next.getUnit().equals(durations.get(durations.size() - 1).getUnit()))
+                    break;
+                duration = next;
+                if (next.getUnit().isPrecise())
+                    durations.add(next);
+            }
+            return durations;
+        }
+
+        /**
+         * Find the largest unit that fits the difference, the same way as PrettyTime does
+         */
+        private Duration calculateDuration(long difference) {
+            long absoluteDifference = Math.abs(difference);
+            DurationImpl result = new DurationImpl();
+            for (int i = 0; i < units.length; i++) {
+                TimeUnit unit = units[i];
+                long millisPerUnit = Math.abs(unit.getMillisPerUnit());
+                long quantity = Math.abs(unit.getMaxQuantity());
+                boolean isLastUnit = i == units.length - 1;
+                if (quantity == 0 && !isLastUnit)
+                    quantity = units[i + 1].getMillisPerUnit() / unit.getMillisPerUnit();
+                if (millisPerUnit * quantity > absoluteDifference || isLastUnit) {
+                    result.setUnit(unit);
+                    if (millisPerUnit > absoluteDifference) {
+                        //Less than one of the smallest unit, so it is rounded up to one
+                        result.setQuantity(difference < 0 ? -1 : 1);
+                        result.setDelta(0);
+                    } else {
+                        result.setQuantity(difference / millisPerUnit);
+                        result.setDelta(difference - result.getQuantity() * millisPerUnit);
+                    }
+                    break;
                 }
             }
-            durationList.remove(smallest);
+            return result;
         }
-        return durationList;
     }
 
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore;
+
+import org.bukkit.ChatColor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the single pass colorMessage gives the same output as the regex and replace implementation it replaced
+ */
+class LapisCoreConfigurationTest {
+
+    private static final String PRIMARY = ChatColor.GOLD.toString();
+    private static final String SECONDARY = ChatColor.RED.toString();
+    //Heavy on the characters that mean something to either implementation so that edge cases come up often
+    private static final String ALPHABET = "&&&##ppssaAfF09xXkKoOrRgGzZ \u00a7";
+
+    @Test
+    void matchesTheOriginalImplementation() {
+        Random random = new Random(40);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            builder.setLength(0);
+            int length = random.nextInt(24);
+            for (int j = 0; j < length; j++)
+                builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            String msg = builder.toString();
+            assertEquals(originalColorMessage(msg), LapisCoreConfiguration.colorMessage(msg, PRIMARY, SECONDARY), msg);
+        }
+    }
+
+    @Test
+    void translatesEachKindOfCode() {
+        String[] messages = {
+                "", "plain text", "&pPrimary &sSecondary", "&aGreen &LBold &rReset", "#FF00aaHex",
+                "&x&f&f&0&0&a&aManual hex", "&&a", "&#123456", "#12345", "#1234567", "&", "&z", "50% & more"
+        };
+        for (String msg : messages)
+            assertEquals(originalColorMessage(msg), LapisCoreConfiguration.colorMessage(msg, PRIMARY, SECONDARY), msg);
+        assertEquals(PRIMARY + "a" + SECONDARY + "b", LapisCoreConfiguration.colorMessage("&pa&sb", PRIMARY, SECONDARY));
+        assertEquals("\u00a7x\u00a7F\u00a7F\u00a70\u00a70\u00a7a\u00a7a", LapisCoreConfiguration.colorMessage("#FF00aa", PRIMARY, SECONDARY));
+    }
+
+    /**
+     * colorMessage as it was before it was rewritten as a single pass
+     */
+    private static String originalColorMessage(String msg) {
+        Matcher matcher = Pattern.compile("#([A-Fa-f0-9]{6})").matcher(msg);
+        StringBuilder builder = new StringBuilder(msg.length() + 4 * 8);
+        while (matcher.find()) {
+            String group = matcher.group(1);
+            matcher.appendReplacement(builder, ChatColor.COLOR_CHAR + "x"
+                    + ChatColor.COLOR_CHAR + group.charAt(0) + ChatColor.COLOR_CHAR + group.charAt(1)
+                    + ChatColor.COLOR_CHAR + group.charAt(2) + ChatColor.COLOR_CHAR + group.charAt(3)
+                    + ChatColor.COLOR_CHAR + group.charAt(4) + ChatColor.COLOR_CHAR + group.charAt(5));
+        }
+        msg = matcher.appendTail(builder).toString();
+        return ChatColor.translateAlternateColorCodes('&', msg.replace("&p", PRIMARY).replace("&s", SECONDARY));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the limits at their boundaries, time is passed in so nothing depends on the clock
+ */
+class LapisCommandLimiterTest {
+
+    private static final long NOW = 1_000_000;
+    private final UUID uuid = UUID.randomUUID();
+
+    @Test
+    void cooldownEndsExactlyWhenItExpires() {
+        LapisCommandLimiter limiter = new LapisCommandLimiter();
+        limiter.setCooldown(1000);
+        assertEquals(0, limiter.tryAcquire(uuid, NOW));
+        assertEquals(1000, limiter.tryAcquire(uuid, NOW));
+        assertEquals(1, limiter.tryAcquire(uuid, NOW + 999));
+        assertEquals(0, limiter.tryAcquire(uuid, NOW + 1000));
+    }
+
+    @Test
+    void rateLimitAllowsAFullBurstThenRefillsEvenly() {
+        LapisCommandLimiter limiter = new LapisCommandLimiter();
+        limiter.setRateLimit(3, 3000);
+        for (int i = 0; i < 3; i++)
+            assertEquals(0, limiter.tryAcquire(uuid, NOW), "use " + i);
+        assertEquals(1000, limiter.tryAcquire(uuid, NOW));
+        assertEquals(1, limiter.tryAcquire(uuid, NOW + 999));
+        assertEquals(0, limiter.tryAcquire(uuid, NOW + 1000));
+        assertTrue(limiter.tryAcquire(uuid, NOW + 1000) > 0);
+    }
+
+    @Test
+    void cooldownRejectionCostsNoUses() {
+        LapisCommandLimiter limiter = new LapisCommandLimiter();
+        limiter.setCooldown(100);
+        limiter.setRateLimit(2, 10_000);
+        assertEquals(0, limiter.tryAcquire(uuid, NOW));
+        //Spamming during the cooldown must not use up the rate limit
+        for (int i = 0; i < 10; i++)
+            assertTrue(limiter.tryAcquire(uuid, NOW + i) > 0);
+        assertEquals(0, limiter.tryAcquire(uuid, NOW + 100));
+    }
+
+    @Test
+    void rateLimitRejectionGivesTheCooldownBack() {
+        LapisCommandLimiter limiter = new LapisCommandLimiter();
+        limiter.setCooldown(100);
+        limiter.setRateLimit(1, 10_000);
+        assertEquals(0, limiter.tryAcquire(uuid, NOW));
+        //Rejected by the rate limit, so the cooldown should still end 100ms after the first use
+        assertEquals(10_000 - 200, limiter.tryAcquire(uuid, NOW + 200));
+        assertEquals(10_000 - 250, limiter.tryAcquire(uuid, NOW + 250));
+        assertEquals(0, limiter.tryAcquire(uuid, NOW + 10_000));
+    }
+
+    @Test
+    void resetClearsBothLimits() {
+        LapisCommandLimiter limiter = new LapisCommandLimiter();
+        limiter.setCooldown(1000);
+        limiter.setRateLimit(1, 10_000);
+        assertEquals(0, limiter.tryAcquire(uuid, NOW));
+        limiter.reset(uuid);
+        assertEquals(0, limiter.tryAcquire(uuid, NOW));
+    }
+
+    @Test
+    void noLimitsNeverRejects() {
+        LapisCommandLimiter limiter = new LapisCommandLimiter();
+        for (int i = 0; i < 100; i++)
+            assertEquals(0, limiter.tryAcquire(uuid, NOW));
+    }
+
+}
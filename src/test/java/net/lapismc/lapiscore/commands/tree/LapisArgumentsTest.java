@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.commands.tree;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the number and duration parsers at the edges of what they accept
+ */
+class LapisArgumentsTest {
+
+    @Test
+    void parsesIntegersAtTheirLimits() {
+        assertEquals(Integer.MAX_VALUE, LapisArguments.parseInteger("2147483647"));
+        assertEquals(Integer.MIN_VALUE, LapisArguments.parseInteger("-2147483648"));
+        assertEquals(5, LapisArguments.parseInteger("+5"));
+        assertEquals(0, LapisArguments.parseInteger("-0"));
+        assertNull(LapisArguments.parseInteger("2147483648"));
+        assertNull(LapisArguments.parseInteger("-2147483649"));
+    }
+
+    @Test
+    void rejectsMalformedIntegers() {
+        for (String input : new String[]{"", "-", "+", "1.5", "1e3", " 1", "1 ", "--1", "abc"})
+            assertNull(LapisArguments.parseInteger(input), input);
+    }
+
+    @Test
+    void parsesDurations() {
+        assertEquals(30_000L, LapisArguments.parseDuration("30s"));
+        assertEquals(30_000L, LapisArguments.parseDuration("30"));
+        assertEquals(5_400_000L, LapisArguments.parseDuration("1h30m"));
+        assertEquals(5_400_000L, LapisArguments.parseDuration("1H30M"));
+        assertEquals(2 * 86_400_000L + 1000, LapisArguments.parseDuration("2d1"));
+        assertEquals(604_800_000L, LapisArguments.parseDuration("1w"));
+        assertEquals(0L, LapisArguments.parseDuration("0s"));
+    }
+
+    @Test
+    void rejectsMalformedDurations() {
+        for (String input : new String[]{"", "s", "1x", "1hm", "-1s", "1.5h", "2147483648s"})
+            assertNull(LapisArguments.parseDuration(input), input);
+    }
+
+    @Test
+    void rejectsDurationsThatOverflow() {
+        //The largest number allowed in weeks is about 1.3e18ms, so eight of them overflow a long
+        String week = Integer.MAX_VALUE + "w";
+        assertEquals(Integer.MAX_VALUE * 604_800_000L, LapisArguments.parseDuration(week));
+        assertEquals(7 * (Integer.MAX_VALUE * 604_800_000L), LapisArguments.parseDuration(week.repeat(7)));
+        assertNull(LapisArguments.parseDuration(week.repeat(8)));
+        assertNull(LapisArguments.parseDuration(week.repeat(100)));
+    }
+
+}
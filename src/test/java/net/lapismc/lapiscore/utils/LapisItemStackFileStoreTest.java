@@ -0,0 +1,192 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips encoded inventories through the file store, including reopening and compacting the file
+ */
+class LapisItemStackFileStoreTest {
+
+    @TempDir
+    File folder;
+
+    @Test
+    void loadsWhatWasSaved() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(new File(folder, "items.dat"))) {
+            assertNull(store.loadEncoded(uuid));
+            assertFalse(store.contains(uuid));
+            store.saveEncoded(uuid, new byte[]{1, 2, 3});
+            assertTrue(store.contains(uuid));
+            assertArrayEquals(new byte[]{1, 2, 3}, store.loadEncoded(uuid));
+            store.saveEncoded(uuid, new byte[]{4, 5});
+            assertArrayEquals(new byte[]{4, 5}, store.loadEncoded(uuid));
+        }
+    }
+
+    @Test
+    void keepsTheLatestRecordsWhenReopened() throws IOException {
+        File file = new File(folder, "items.dat");
+        Map<UUID, byte[]> expected = saveRandom(file, 200);
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            assertStored(store, expected);
+        }
+    }
+
+    @Test
+    void removedInventoriesStayRemoved() throws IOException {
+        File file = new File(folder, "items.dat");
+        UUID kept = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            store.saveEncoded(kept, new byte[]{1});
+            store.saveEncoded(removed, new byte[]{2});
+            store.removeItems(removed);
+            assertFalse(store.contains(removed));
+        }
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            assertArrayEquals(new byte[]{1}, store.loadEncoded(kept));
+            assertFalse(store.contains(removed));
+        }
+    }
+
+    @Test
+    void compactionKeepsEveryInventory() throws IOException {
+        File file = new File(folder, "items.dat");
+        Map<UUID, byte[]> expected = saveRandom(file, 500);
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            store.compact();
+            assertStored(store, expected);
+            //The store must still be writable after the file was swapped
+            UUID uuid = UUID.randomUUID();
+            store.saveEncoded(uuid, new byte[]{9});
+            expected.put(uuid, new byte[]{9});
+        }
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            assertStored(store, expected);
+        }
+    }
+
+    @Test
+    void compactsAStoreThatIsStillOpen() throws IOException {
+        File file = new File(folder, "items.dat");
+        Random random = new Random(32);
+        UUID[] uuids = new UUID[10];
+        for (int i = 0; i < uuids.length; i++)
+            uuids[i] = UUID.randomUUID();
+        Map<UUID, byte[]> expected = new HashMap<>();
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            //Compact twice in the same session, with enough data each time for the mapping to have grown
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < 200; i++) {
+                    byte[] data = new byte[random.nextInt(20000)];
+                    random.nextBytes(data);
+                    UUID uuid = uuids[random.nextInt(uuids.length)];
+                    store.saveEncoded(uuid, data);
+                    expected.put(uuid, data);
+                }
+                assertTrue(store.shouldCompact());
+                store.compact();
+                assertFalse(store.shouldCompact());
+                assertFalse(new File(folder, "items.dat.compact").exists());
+                assertStored(store, expected);
+            }
+        }
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            assertStored(store, expected);
+        }
+    }
+
+    @Test
+    void growsPastTheInitialMapping() throws IOException {
+        File file = new File(folder, "items.dat");
+        UUID uuid = UUID.randomUUID();
+        byte[] large = new byte[3 * 1024 * 1024];
+        new Random(32).nextBytes(large);
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            store.saveEncoded(uuid, large);
+        }
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            assertArrayEquals(large, store.loadEncoded(uuid));
+        }
+    }
+
+    @Test
+    void ignoresARecordBrokenByACrash() throws IOException {
+        File file = new File(folder, "items.dat");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            store.saveEncoded(first, new byte[]{1, 2, 3});
+            store.saveEncoded(second, new byte[]{4, 5, 6});
+        }
+        //Corrupt the last byte of the second record, as if the server stopped while writing it
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(2L * 28 + 3 + 2);
+            raf.write(0x7F);
+        }
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            assertArrayEquals(new byte[]{1, 2, 3}, store.loadEncoded(first));
+            assertFalse(store.contains(second));
+            //New records go where the broken one was
+            store.saveEncoded(second, new byte[]{7});
+        }
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            assertArrayEquals(new byte[]{7}, store.loadEncoded(second));
+        }
+    }
+
+    /**
+     * Save a few inventories several times each, so the file holds old records as well
+     */
+    private Map<UUID, byte[]> saveRandom(File file, int saves) throws IOException {
+        Random random = new Random(saves);
+        UUID[] uuids = new UUID[20];
+        for (int i = 0; i < uuids.length; i++)
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+        Map<UUID, byte[]> expected = new HashMap<>();
+        try (LapisItemStackFileStore store = new LapisItemStackFileStore(file)) {
+            for (int i = 0; i < saves; i++) {
+                byte[] data = new byte[random.nextInt(2000)];
+                random.nextBytes(data);
+                UUID uuid = uuids[random.nextInt(uuids.length)];
+                store.saveEncoded(uuid, data);
+                expected.put(uuid, data);
+            }
+        }
+        return expected;
+    }
+
+    private void assertStored(LapisItemStackFileStore store, Map<UUID, byte[]> expected) {
+        for (Map.Entry<UUID, byte[]> entry : expected.entrySet())
+            assertArrayEquals(entry.getValue(), store.loadEncoded(entry.getKey()), entry.getKey().toString());
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips the binary item format with already serialized items, so no server is needed
+ */
+class LapisItemStackStorageTest {
+
+    private final LapisItemStackStorage storage = new LapisItemStackStorage();
+
+    @Test
+    void roundTripsEverySlot() throws IOException {
+        Random random = new Random(31);
+        byte[][] slots = new byte[54][];
+        for (int i = 0; i < slots.length; i += 3) {
+            slots[i] = new byte[random.nextInt(300)];
+            random.nextBytes(slots[i]);
+        }
+        for (LapisItemStackStorage.Compression compression : LapisItemStackStorage.Compression.values()) {
+            byte[][] decoded = storage.decodeSlots(storage.encodeSlots(slots, compression));
+            assertEquals(slots.length, decoded.length, compression.name());
+            for (int i = 0; i < slots.length; i++)
+                assertArrayEquals(slots[i], decoded[i], compression.name() + " slot " + i);
+        }
+    }
+
+    @Test
+    void roundTripsEmptyInventories() throws IOException {
+        for (LapisItemStackStorage.Compression compression : LapisItemStackStorage.Compression.values()) {
+            assertEquals(0, storage.decodeSlots(storage.encodeSlots(new byte[0][], compression)).length);
+            byte[][] decoded = storage.decodeSlots(storage.encodeSlots(new byte[27][], compression));
+            assertEquals(27, decoded.length);
+            assertTrue(Arrays.stream(decoded).allMatch(slot -> slot == null));
+        }
+    }
+
+    @Test
+    void rejectsUnknownFormats() {
+        assertThrows(IOException.class, () -> storage.decodeSlots(new byte[0]));
+        assertThrows(IOException.class, () -> storage.decodeSlots(new byte[]{2, 0, 0, 0}));
+        assertThrows(IOException.class, () -> storage.decodeSlots(new byte[]{1, 9, 0, 0}));
+    }
+
+    @Test
+    void rejectsHugeInventorySizes() {
+        //Version 1, no compression, a size of Integer.MAX_VALUE and no items
+        byte[] data = {1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0};
+        assertThrows(IOException.class, () -> storage.decodeSlots(data));
+    }
+
+    @Test
+    void rejectsMoreItemsThanTheDataHolds() {
+        //A size and count of 1000 with no items following
+        byte[] data = {1, 0, (byte) 0xE8, 0x07, (byte) 0xE8, 0x07};
+        assertThrows(IOException.class, () -> storage.decodeSlots(data));
+    }
+
+    @Test
+    void rejectsItemsLongerThanTheData() {
+        //One item in slot 0 that claims to be 2MB long but only has 3 bytes, reading it must fail rather than allocate 2MB
+        byte[] body = {1, 1, 0, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 1, 2, 3};
+        assertThrows(IOException.class, () -> storage.decodeSlots(withHeader(LapisItemStackStorage.Compression.NONE, body)));
+        assertThrows(IOException.class, () -> storage.decodeSlots(withHeader(LapisItemStackStorage.Compression.DEFLATE, body)));
+    }
+
+    @Test
+    void rejectsTruncatedData() throws IOException {
+        //Only uncompressed data, deflate data that is only missing its checksum still inflates fully
+        byte[][] slots = {new byte[]{1, 2, 3, 4, 5}, null, new byte[]{6, 7}};
+        byte[] data = storage.encodeSlots(slots, LapisItemStackStorage.Compression.NONE);
+        for (int length = 0; length < data.length; length++) {
+            byte[] truncated = Arrays.copyOf(data, length);
+            assertThrows(IOException.class, () -> storage.decodeSlots(truncated), "truncated to " + length);
+        }
+    }
+
+    /**
+     * Add the version and compression to a hand written body, compressing it if needed
+     */
+    private byte[] withHeader(LapisItemStackStorage.Compression compression, byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(1);
+        bytes.write(compression.ordinal());
+        try (OutputStream out = compression == LapisItemStackStorage.Compression.DEFLATE ? new DeflaterOutputStream(bytes) : bytes) {
+            out.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips locations through the string and binary formats, and checks strings the original parser accepted
+ */
+class LocationUtilsTest {
+
+    private static final UUID WORLD_ID = UUID.randomUUID();
+    private final World world = createWorld("world", WORLD_ID);
+    private final LocationUtils utils = new LocationUtils();
+
+    @Test
+    void roundTripsThroughStrings() {
+        Random random = new Random(36);
+        for (int i = 0; i < 10_000; i++) {
+            Location loc = new Location(world, random.nextDouble() * 6e7 - 3e7, random.nextDouble() * 400 - 64,
+                    random.nextDouble() * 6e7 - 3e7, random.nextFloat() * 360 - 180, random.nextFloat() * 180 - 90);
+            assertSameLocation(loc, parse(utils.parseLocationToString(loc)));
+        }
+    }
+
+    @Test
+    void roundTripsAwkwardValues() {
+        double[] values = {0, -0.0, 1e-300, 4.9e-324, 1e21, -1e22, 1.0E-5, 123456789.123456789, Double.MAX_VALUE};
+        for (double value : values) {
+            Location loc = new Location(world, value, -value, value / 3, (float) value, (float) -value);
+            assertSameLocation(loc, parse(utils.parseLocationToString(loc)));
+        }
+    }
+
+    @Test
+    void acceptsWhatTheOriginalParserAccepted() {
+        String[] inputs = {
+                "world,1.5,64.0,-2.5,10.0,90.0",
+                "world, 1.5, 64.0, -2.5, 10.0, 90.0",
+                "world,\t1.5,64.0 ,-2.5,10.0,90.0\n",
+                "world,1.5,64.0,-2.5,10.0,90.0,",
+                "world,1.5,64.0,-2.5,10.0,90.0,extra,values",
+                "world,1.5d,64,-2.5f,1e1,9E1",
+                "world,+1.5,64.,-2.50,10,90"
+        };
+        for (String input : inputs) {
+            LocationUtils.LocationData data = utils.parseStringToLocationData(input, message -> fail(input + ": " + message));
+            assertNotNull(data, input);
+            assertEquals("world", data.getWorldName(), input);
+            assertEquals(1.5, data.getX(), input);
+            assertEquals(64.0, data.getY(), input);
+            assertEquals(-2.5, data.getZ(), input);
+            assertEquals(10.0f, data.getPitch(), input);
+            assertEquals(90.0f, data.getYaw(), input);
+        }
+    }
+
+    @Test
+    void reportsWhyAStringIsInvalid() {
+        String[] inputs = {",1,2,3,4,5", ",,,,,", "world", "world,1,2,3,4", "world,1,2,x,4,5", "world,1,2,,4,5", "world,1,2,3,4,0x"};
+        for (String input : inputs) {
+            List<String> errors = new ArrayList<>();
+            assertNull(utils.parseStringToLocationData(input, errors::add), input);
+            assertEquals(1, errors.size(), input);
+        }
+        assertNull(utils.parseStringToLocationData(null, message -> fail(message)));
+        assertNull(utils.parseStringToLocationData("", message -> fail(message)));
+    }
+
+    @Test
+    void writesTheFixedWidthBinaryFormat() {
+        Location loc = new Location(world, 1.25, -60, 3e7, 45.5f, -12.25f);
+        ByteBuffer buffer = ByteBuffer.allocate(LocationUtils.BINARY_SIZE * 2);
+        utils.writeLocation(buffer, loc);
+        assertEquals(LocationUtils.BINARY_SIZE, buffer.position());
+        buffer.flip();
+        assertEquals(WORLD_ID, new UUID(buffer.getLong(), buffer.getLong()));
+        assertEquals(1.25, buffer.getDouble());
+        assertEquals(-60, buffer.getDouble());
+        assertEquals(3e7, buffer.getDouble());
+        assertEquals(45.5f, buffer.getFloat());
+        assertEquals(-12.25f, buffer.getFloat());
+        assertArrayEquals(Arrays.copyOf(buffer.array(), LocationUtils.BINARY_SIZE), utils.encodeLocation(loc));
+        assertNull(utils.decodeLocation(new byte[LocationUtils.BINARY_SIZE - 1]));
+    }
+
+    private Location parse(String s) {
+        LocationUtils.LocationData data = utils.parseStringToLocationData(s, message -> fail(s + ": " + message));
+        assertNotNull(data, s);
+        assertEquals(world.getName(), data.getWorldName());
+        return data.toLocation(world);
+    }
+
+    private void assertSameLocation(Location expected, Location actual) {
+        String message = expected.toString();
+        //Compare the exact bits so that -0.0 and 0.0 are told apart
+        assertEquals(Double.doubleToLongBits(expected.getX()), Double.doubleToLongBits(actual.getX()), message);
+        assertEquals(Double.doubleToLongBits(expected.getY()), Double.doubleToLongBits(actual.getY()), message);
+        assertEquals(Double.doubleToLongBits(expected.getZ()), Double.doubleToLongBits(actual.getZ()), message);
+        assertEquals(Float.floatToIntBits(expected.getYaw()), Float.floatToIntBits(actual.getYaw()), message);
+        assertEquals(Float.floatToIntBits(expected.getPitch()), Float.floatToIntBits(actual.getPitch()), message);
+    }
+
+    /**
+     * A world that only knows its name and UUID, enough for locations to be written and read without a server
+     */
+    private static World createWorld(String name, UUID uuid) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getName" -> name;
+                    case "getUID" -> uuid;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "World{" + name + "}";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+}
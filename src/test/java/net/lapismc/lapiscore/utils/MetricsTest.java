@@ -0,0 +1,140 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sends Metrics payloads to a local stand-in for bStats and checks what arrives
+ */
+class MetricsTest {
+
+    private HttpServer server;
+    private volatile byte[] received;
+    private CountDownLatch receivedLatch;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        receivedLatch = new CountDownLatch(1);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                received = in.readAllBytes();
+                receivedLatch.countDown();
+                byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (IOException e) {
+                //The client dropped the request part way through
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void streamedPayloadMatchesBuiltJson() throws Exception {
+        Consumer<Metrics.JsonObjectBuilder> data = sampleData();
+        Metrics.JsonObjectBuilder builder = new Metrics.JsonObjectBuilder();
+        data.accept(builder);
+        byte[] expected = builder.build().toString().getBytes(StandardCharsets.UTF_8);
+
+        String response = Metrics.MetricsBase.sendData(openConnection(), data, null);
+
+        assertEquals("{}", response);
+        assertTrue(receivedLatch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(expected, received);
+    }
+
+    @Test
+    void loggedCopyIsWhatWasSent() throws Exception {
+        //Every call gives a different value, so calling the data twice would log different data
+        int[] calls = {0};
+        Consumer<Metrics.JsonObjectBuilder> data = builder -> builder.appendField("playerAmount", ++calls[0]);
+        StringBuilder sentData = new StringBuilder();
+
+        Metrics.MetricsBase.sendData(openConnection(), data, sentData);
+
+        assertTrue(receivedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, calls[0]);
+        assertEquals(sentData.toString(), new String(received, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void failedWriteIsNotSent() throws Exception {
+        Consumer<Metrics.JsonObjectBuilder> data = builder -> {
+            builder.appendField("playerAmount", 1);
+            throw new IllegalStateException("Failed to collect the data");
+        };
+
+        assertThrows(IllegalStateException.class, () -> Metrics.MetricsBase.sendData(openConnection(), data, null));
+        assertFalse(receivedLatch.await(1, TimeUnit.SECONDS));
+    }
+
+    private HttpURLConnection openConnection() throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/api/v2/data/bukkit");
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private Consumer<Metrics.JsonObjectBuilder> sampleData() {
+        Map<String, Integer> pie = new LinkedHashMap<>();
+        pie.put("Yes", 3);
+        pie.put("No \"quoted\" \\ \u0001", 1);
+        Metrics.JsonObjectBuilder.JsonObject[] charts = {
+                new Metrics.SimpleBarChart("bar", () -> pie).getRequestJsonObject((message, error) -> fail(message), true),
+                new Metrics.SimplePie("pie", () -> "\u00dcn\u00efc\u00f6d\u00e9").getRequestJsonObject((message, error) -> fail(message), true)
+        };
+        return builder -> {
+            builder.appendField("playerAmount", 42);
+            builder.appendField("bukkitVersion", "1.21.11-R0.1-SNAPSHOT");
+            builder.appendField("service", service -> {
+                service.appendField("pluginVersion", "1.0.0");
+                service.appendField("id", 1234);
+                service.appendField("customCharts", charts);
+            });
+            builder.appendField("serverUUID", "00000000-0000-0000-0000-000000000000");
+            builder.appendField("metricsVersion", Metrics.MetricsBase.METRICS_VERSION);
+        };
+    }
+
+}
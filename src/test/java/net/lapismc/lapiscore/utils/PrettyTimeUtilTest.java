@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026 Benjamin Martin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.lapismc.lapiscore.utils;
+
+import org.junit.jupiter.api.Test;
+import org.ocpsoft.prettytime.Duration;
+import org.ocpsoft.prettytime.PrettyTime;
+import org.ocpsoft.prettytime.units.JustNow;
+import org.ocpsoft.prettytime.units.Millisecond;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the cached formatter against formatting with PrettyTime directly, the way PrettyTimeUtil used to
+ * <p>
+ * Every offset is a quarter of a second away from a half second, so the clock ticking during a test can't change the result
+ */
+class PrettyTimeUtilTest {
+
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private static final long[] OFFSETS = {
+            0, SECOND, 59 * SECOND, MINUTE, 90 * SECOND, 29 * MINUTE + 30 * SECOND, HOUR - SECOND, HOUR + MINUTE,
+            DAY, 3 * DAY + 7 * HOUR + 30 * MINUTE, 40 * DAY, 400 * DAY, 4000 * DAY
+    };
+
+    private final PrettyTimeUtil util = new PrettyTimeUtil();
+
+    @Test
+    void matchesPrettyTime() {
+        for (long offset : OFFSETS) {
+            //Either side of half a second, PrettyTime rounds the seconds up after it
+            for (long signedOffset : new long[]{offset + 250, offset + 750, -offset - 250, -offset - 750}) {
+                for (int units = 1; units <= 3; units++) {
+                    long epoch = System.currentTimeMillis() + signedOffset;
+                    String message = "offset " + signedOffset + " with " + units + " units";
+                    assertEquals(expectedRelative(epoch, units), util.getRelativeTimeDifference(epoch, units), message);
+                    assertEquals(expectedClean(epoch, units), util.getCleanTimeDifference(epoch, units), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void lessThanASecondAgoIsInThePast() {
+        long now = System.currentTimeMillis();
+        String past = util.getRelativeTimeDifference(now - 500, 2);
+        String future = util.getRelativeTimeDifference(now + 500, 2);
+        assertNotEquals(past, future);
+        assertEquals(expectedRelative(now - 500, 2), past);
+        assertEquals(expectedRelative(now + 500, 2), future);
+    }
+
+    @Test
+    void cachedResultsKeepTheirSign() {
+        long now = System.currentTimeMillis();
+        //Format from now first so that a cache keyed only by whole seconds would return it for the past too
+        String future = util.getRelativeTimeDifference(now + 200, 1);
+        String past = util.getRelativeTimeDifference(now - 200, 1);
+        assertNotEquals(future, past);
+    }
+
+    @Test
+    void reduceDurationListKeepsTheLargestUnits() {
+        PrettyTime prettyTime = createPrettyTime();
+        List<Duration> durations = prettyTime.calculatePreciseDuration(
+                new Date(System.currentTimeMillis() - (3 * DAY + 7 * HOUR + 5 * MINUTE + 500)));
+        List<Duration> reduced = util.reduceDurationList(durations, 2);
+        assertEquals(2, reduced.size());
+        assertTrue(reduced.get(0).getUnit().getMillisPerUnit() > reduced.get(1).getUnit().getMillisPerUnit());
+        assertEquals(DAY, reduced.get(0).getUnit().getMillisPerUnit());
+        assertEquals(HOUR, reduced.get(1).getUnit().getMillisPerUnit());
+    }
+
+    private String expectedRelative(long epoch, int units) {
+        PrettyTime prettyTime = createPrettyTime();
+        return prettyTime.format(reduce(prettyTime.calculatePreciseDuration(new Date(epoch)), units));
+    }
+
+    private String expectedClean(long epoch, int units) {
+        PrettyTime prettyTime = createPrettyTime();
+        return prettyTime.formatDuration(reduce(prettyTime.calculatePreciseDuration(new Date(epoch)), units));
+    }
+
+    private PrettyTime createPrettyTime() {
+        PrettyTime prettyTime = new PrettyTime(new Locale("en"));
+        prettyTime.removeUnit(JustNow.class);
+        prettyTime.removeUnit(Millisecond.class);
+        return prettyTime;
+    }
+
+    /**
+     * The original remove-smallest loop of reduceDurationList
+     */
+    private List<Duration> reduce(List<Duration> durations, int units) {
+        while (durations.size() > units) {
+            Duration smallest = null;
+            for (Duration current : durations) {
+                if (smallest == null || smallest.getUnit().getMillisPerUnit() > current.getUnit().getMillisPerUnit())
+                    smallest = current;
+            }
+            durations.remove(smallest);
+        }
+        return durations;
+    }
+
+}